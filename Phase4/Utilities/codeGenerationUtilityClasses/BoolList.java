@@ -0,0 +1,89 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BoolList extends List {
+    private final long[] words;
+    private final int size;
+    private final AtomicInteger used;
+
+    public BoolList() {
+        this(new long[1], 0, new AtomicInteger());
+    }
+
+    public BoolList(boolean[] values) {
+        this(new long[Math.max(1, (values.length + 63) >>> 6)], values.length, new AtomicInteger(values.length));
+        for(int i = 0; i < values.length; i++)
+            if(values[i])
+                this.words[i >>> 6] |= 1L << i;
+    }
+
+    private BoolList(long[] words, int size, AtomicInteger used) {
+        this.words = words;
+        this.size = size;
+        this.used = used;
+    }
+
+    public Object getElement(int index) {return Boolean.valueOf(getBool(index));}
+
+    public boolean getBool(int index) {
+        if(index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        return (this.words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int getSize() {return this.size;}
+
+    private List generic() {
+        Object[] boxed = new Object[this.size];
+        for(int i = 0; i < this.size; i++)
+            boxed[i] = Boolean.valueOf(getBool(i));
+        return new List().appendAll(boxed);
+    }
+
+    public List append(Object o) {
+        if(o instanceof Boolean)
+            return appendBool(((Boolean) o).booleanValue());
+        return generic().append(o);
+    }
+
+    public List appendAll(Object[] values) {
+        boolean[] unboxed = new boolean[values.length];
+        for(int i = 0; i < values.length; i++) {
+            if(!(values[i] instanceof Boolean))
+                return generic().appendAll(values);
+            unboxed[i] = ((Boolean) values[i]).booleanValue();
+        }
+        return appendBools(unboxed);
+    }
+
+    public List appendBools(boolean[] values) {
+        int newSize = this.size + values.length;
+        long[] target = this.words;
+        AtomicInteger targetUsed = this.used;
+        if(newSize > this.words.length * 64 || !this.used.compareAndSet(this.size, newSize)) {
+            target = new long[Math.max((newSize + 63) >>> 6, this.words.length * 2)];
+            System.arraycopy(this.words, 0, target, 0, (this.size + 63) >>> 6);
+            if((this.size & 63) != 0)
+                target[this.size >>> 6] &= -1L >>> (64 - (this.size & 63));
+            targetUsed = new AtomicInteger(newSize);
+        }
+        for(int i = 0; i < values.length; i++)
+            if(values[i])
+                target[(this.size + i) >>> 6] |= 1L << (this.size + i);
+        return new BoolList(target, newSize, targetUsed);
+    }
+
+    public List appendBool(boolean value) {
+        long[] target = this.words;
+        AtomicInteger targetUsed = this.used;
+        if(this.size >= this.words.length * 64 || !this.used.compareAndSet(this.size, this.size + 1)) {
+            target = new long[this.words.length * 2];
+            System.arraycopy(this.words, 0, target, 0, (this.size + 63) >>> 6);
+            if((this.size & 63) != 0)
+                target[this.size >>> 6] &= -1L >>> (64 - (this.size & 63));
+            targetUsed = new AtomicInteger(this.size + 1);
+        }
+        if(value)
+            target[this.size >>> 6] |= 1L << this.size;
+        return new BoolList(target, this.size + 1, targetUsed);
+    }
+}
@@ -1,36 +1,116 @@
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
-import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Fptr {
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, MethodHandle>> handles = new ConcurrentHashMap<>();
+
     Object instance;
     String methodName;
+    MethodHandle handle;
 
     public Fptr(Object instance, String methodName) {
         this.instance = instance;
         this.methodName = methodName;
     }
 
-    public Object invoke(ArrayList<Object> arguments) {
-        int argumentsSize = arguments.size();
-        Class[] argsClasses = new Class[argumentsSize];
-        Object[] argsArray = new Object[argumentsSize];
-        for(int i = 0; i < argumentsSize; i++) {
-            argsClasses[i] = arguments.get(i).getClass();
-            argsArray[i] = arguments.get(i);
+    private static MethodHandle resolve(Class<?> instanceClass, String methodName) {
+        ConcurrentHashMap<String, MethodHandle> classHandles = handles.get(instanceClass);
+        if (classHandles == null) {
+            classHandles = new ConcurrentHashMap<>();
+            ConcurrentHashMap<String, MethodHandle> previous = handles.putIfAbsent(instanceClass, classHandles);
+            if (previous != null)
+                classHandles = previous;
+        }
+        MethodHandle methodHandle = classHandles.get(methodName);
+        if (methodHandle != null)
+            return methodHandle;
+        for (Method candidate : instanceClass.getMethods()) {
+            if (!candidate.getName().equals(methodName))
+                continue;
+            try {
+                methodHandle = MethodHandles.publicLookup().unreflect(candidate);
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+            methodHandle = methodHandle.asType(MethodType.genericMethodType(candidate.getParameterCount() + 1));
+            classHandles.put(methodName, methodHandle);
+            return methodHandle;
+        }
+        new NoSuchMethodException(instanceClass.getName() + "." + methodName).printStackTrace();
+        System.exit(1);
+        return null;
+    }
+
+    private MethodHandle getHandle() {
+        if (this.handle == null)
+            this.handle = resolve(this.instance.getClass(), this.methodName);
+        return this.handle;
+    }
+
+    public Object invoke() {
+        try {
+            return getHandle().invokeExact(this.instance);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
         }
-        Method objectMethod = null;
+        return null;
+    }
+
+    public Object invoke(Object argument0) {
         try {
-            objectMethod = this.instance.getClass().getMethod(this.methodName, argsClasses);
-        } catch (NoSuchMethodException e) { 
+            return getHandle().invokeExact(this.instance, argument0);
+        } catch (Throwable e) {
             e.printStackTrace();
+            System.exit(1);
         }
+        return null;
+    }
+
+    public Object invoke(Object argument0, Object argument1) {
+        try {
+            return getHandle().invokeExact(this.instance, argument0, argument1);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public Object invoke(Object argument0, Object argument1, Object argument2) {
+        try {
+            return getHandle().invokeExact(this.instance, argument0, argument1, argument2);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public Object invoke(Object argument0, Object argument1, Object argument2, Object argument3) {
+        try {
+            return getHandle().invokeExact(this.instance, argument0, argument1, argument2, argument3);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        return null;
+    }
+
+    public Object invoke(Object[] arguments) {
+        Object[] argsArray = new Object[arguments.length + 1];
+        argsArray[0] = this.instance;
+        System.arraycopy(arguments, 0, argsArray, 1, arguments.length);
         try {
-            return objectMethod.invoke(this.instance, argsArray);
-        } catch (IllegalAccessException | InvocationTargetException e) { 
+            return getHandle().invokeWithArguments(argsArray);
+        } catch (Throwable e) {
             e.printStackTrace();
             System.exit(1);
         }
         return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IntList extends List {
+    private final int[] elements;
+    private final int size;
+    private final AtomicInteger used;
+
+    public IntList() {
+        this(new int[8], 0, new AtomicInteger());
+    }
+
+    public IntList(int[] elements) {
+        this(elements, elements.length, new AtomicInteger(elements.length));
+    }
+
+    private IntList(int[] elements, int size, AtomicInteger used) {
+        this.elements = elements;
+        this.size = size;
+        this.used = used;
+    }
+
+    public Object getElement(int index) {return Integer.valueOf(getInt(index));}
+
+    public int getInt(int index) {
+        if(index < 0 || index >= this.size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        return this.elements[index];
+    }
+
+    public int getSize() {return this.size;}
+
+    private List generic() {
+        Object[] boxed = new Object[this.size];
+        for(int i = 0; i < this.size; i++)
+            boxed[i] = Integer.valueOf(this.elements[i]);
+        return new List().appendAll(boxed);
+    }
+
+    public List append(Object o) {
+        if(o instanceof Integer)
+            return appendInt(((Integer) o).intValue());
+        return generic().append(o);
+    }
+
+    public List appendAll(Object[] values) {
+        int[] unboxed = new int[values.length];
+        for(int i = 0; i < values.length; i++) {
+            if(!(values[i] instanceof Integer))
+                return generic().appendAll(values);
+            unboxed[i] = ((Integer) values[i]).intValue();
+        }
+        return appendInts(unboxed);
+    }
+
+    public List appendInts(int[] values) {
+        int newSize = this.size + values.length;
+        if(newSize <= this.elements.length && this.used.compareAndSet(this.size, newSize)) {
+            System.arraycopy(values, 0, this.elements, this.size, values.length);
+            return new IntList(this.elements, newSize, this.used);
+        }
+        int[] grown = new int[Math.max(newSize, this.elements.length * 2 + 8)];
+        System.arraycopy(this.elements, 0, grown, 0, this.size);
+        System.arraycopy(values, 0, grown, this.size, values.length);
+        return new IntList(grown, newSize, new AtomicInteger(newSize));
+    }
+
+    public List appendInt(int value) {
+        if(this.size < this.elements.length && this.used.compareAndSet(this.size, this.size + 1)) {
+            this.elements[this.size] = value;
+            return new IntList(this.elements, this.size + 1, this.used);
+        }
+        int[] grown = new int[this.size * 2 + 8];
+        System.arraycopy(this.elements, 0, grown, 0, this.size);
+        grown[this.size] = value;
+        return new IntList(grown, this.size + 1, new AtomicInteger(this.size + 1));
+    }
+}
@@ -1,31 +1,143 @@
-import java.util.ArrayList;
-
 public class List {
-    public ArrayList<Object> elements;
+    private static final Object[] EMPTY_NODE = new Object[32];
+    private static final Object[] EMPTY_TAIL = new Object[0];
+
+    private final int count;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
 
-    public List(ArrayList<Object> newElements) {
-        this.elements = new ArrayList<>();
-        for(Object newElement : newElements)
-            this.elements.add(getNewObject(newElement));
+    public List() {
+        this(0, 5, EMPTY_NODE, EMPTY_TAIL);
     }
 
-    public List(List that) {
-        this(that.elements);
+    private List(int count, int shift, Object[] root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
     }
 
-    private Object getNewObject(Object o) {
-        if(o instanceof List)
-            return new List((List) o);
-        else
-            return o;
+    private int tailOffset() {
+        if(this.count < 32)
+            return 0;
+        return ((this.count - 1) >>> 5) << 5;
     }
 
     public Object getElement(int index) {
-        return this.elements.get(index);
+        if(index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.count);
+        if(index >= tailOffset())
+            return this.tail[index & 31];
+        Object[] node = this.root;
+        for(int level = this.shift; level > 0; level -= 5)
+            node = (Object[]) node[(index >>> level) & 31];
+        return node[index & 31];
+    }
+
+    public int getInt(int index) {return ((Integer) getElement(index)).intValue();}
+
+    public boolean getBool(int index) {return ((Boolean) getElement(index)).booleanValue();}
+
+    public int getSize() {return this.count;}
+
+    public List appendInt(int value) {
+        if(this.count == 0)
+            return new IntList().appendInt(value);
+        return append(Integer.valueOf(value));
+    }
+
+    public List appendBool(boolean value) {
+        if(this.count == 0)
+            return new BoolList().appendBool(value);
+        return append(Boolean.valueOf(value));
     }
 
-    public int getSize() {return this.elements.size();}
+    //the arrays passed to the bulk appends are owned by the list afterwards
+    public List appendInts(int[] values) {
+        if(getSize() == 0)
+            return new IntList(values);
+        Object[] boxed = new Object[values.length];
+        for(int i = 0; i < values.length; i++)
+            boxed[i] = Integer.valueOf(values[i]);
+        return appendAll(boxed);
+    }
+
+    public List appendBools(boolean[] values) {
+        if(getSize() == 0)
+            return new BoolList(values);
+        Object[] boxed = new Object[values.length];
+        for(int i = 0; i < values.length; i++)
+            boxed[i] = Boolean.valueOf(values[i]);
+        return appendAll(boxed);
+    }
+
+    //fills the tail a block at a time instead of copying it once per element
+    public List appendAll(Object[] values) {
+        List result = this;
+        int next = 0;
+        while(next < values.length) {
+            int room = 32 - (result.count - result.tailOffset());
+            if(room == 0) {
+                result = result.append(values[next]);
+                next += 1;
+                continue;
+            }
+            int taken = Math.min(room, values.length - next);
+            Object[] newTail = new Object[result.tail.length + taken];
+            System.arraycopy(result.tail, 0, newTail, 0, result.tail.length);
+            System.arraycopy(values, next, newTail, result.tail.length, taken);
+            result = new List(result.count + taken, result.shift, result.root, newTail);
+            next += taken;
+        }
+        return result;
+    }
 
-    public void addElement(Object o) {this.elements.add(getNewObject(o));}
+    public List append(Object o) {
+        if(this.count - tailOffset() < 32) {
+            Object[] newTail = new Object[this.tail.length + 1];
+            System.arraycopy(this.tail, 0, newTail, 0, this.tail.length);
+            newTail[this.tail.length] = o;
+            return new List(this.count + 1, this.shift, this.root, newTail);
+        }
+        Object[] newRoot;
+        int newShift = this.shift;
+        if((this.count >>> 5) > (1 << this.shift)) {
+            newRoot = new Object[32];
+            newRoot[0] = this.root;
+            newRoot[1] = newPath(this.shift, this.tail);
+            newShift += 5;
+        }
+        else
+            newRoot = pushTail(this.shift, this.root, this.tail);
+        Object[] newTail = new Object[1];
+        newTail[0] = o;
+        return new List(this.count + 1, newShift, newRoot, newTail);
+    }
 
-}
\ No newline at end of file
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int subIndex = ((this.count - 1) >>> level) & 31;
+        Object[] result = new Object[32];
+        System.arraycopy(parent, 0, result, 0, 32);
+        Object[] nodeToInsert;
+        if(level == 5)
+            nodeToInsert = tailNode;
+        else {
+            Object[] child = (Object[]) parent[subIndex];
+            if(child != null)
+                nodeToInsert = pushTail(level - 5, child, tailNode);
+            else
+                nodeToInsert = newPath(level - 5, tailNode);
+        }
+        result[subIndex] = nodeToInsert;
+        return result;
+    }
+
+    private static Object[] newPath(int level, Object[] node) {
+        if(level == 0)
+            return node;
+        Object[] result = new Object[32];
+        result[0] = newPath(level - 5, node);
+        return result;
+    }
+}
@@ -0,0 +1,114 @@
+public class Memo {
+    private static final int MAX_CAPACITY = 1 << 16;
+
+    private final String name;
+    private long[] keys;
+    private Object[] values;
+    private boolean[] referenced;
+    private int mask;
+    private int size;
+    private int hand;
+    private long hits;
+    private long misses;
+
+    public Memo(String name) {
+        this.name = name;
+        allocate(64);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.referenced = new boolean[capacity];
+        this.mask = capacity - 1;
+        this.size = 0;
+        this.hand = 0;
+    }
+
+    private int slot(long key) {
+        long mixed = key * -7046029254386353131L;
+        return (int) (mixed ^ (mixed >>> 32)) & this.mask;
+    }
+
+    public synchronized Object get(long key) {
+        for(int i = slot(key); this.values[i] != null; i = (i + 1) & this.mask) {
+            if(this.keys[i] == key) {
+                this.referenced[i] = true;
+                this.hits++;
+                return this.values[i];
+            }
+        }
+        this.misses++;
+        return null;
+    }
+
+    public synchronized void put(long key, Object value) {
+        if(this.size >= this.values.length / 4 * 3) {
+            if(this.values.length < MAX_CAPACITY)
+                grow();
+            else
+                evict();
+        }
+        int i = slot(key);
+        while(this.values[i] != null) {
+            if(this.keys[i] == key) {
+                this.values[i] = value;
+                return;
+            }
+            i = (i + 1) & this.mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = value;
+        this.referenced[i] = false;
+        this.size++;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        allocate(oldValues.length * 2);
+        for(int i = 0; i < oldValues.length; i++)
+            if(oldValues[i] != null)
+                put(oldKeys[i], oldValues[i]);
+    }
+
+    //clock eviction, entries read since the hand last passed them get a second chance
+    private void evict() {
+        while(true) {
+            this.hand = (this.hand + 1) & this.mask;
+            if(this.values[this.hand] == null)
+                continue;
+            if(this.referenced[this.hand]) {
+                this.referenced[this.hand] = false;
+                continue;
+            }
+            remove(this.hand);
+            return;
+        }
+    }
+
+    //linear probing removal, later entries of the same run shift back into the hole
+    private void remove(int hole) {
+        this.values[hole] = null;
+        this.size--;
+        int i = hole;
+        while(true) {
+            i = (i + 1) & this.mask;
+            if(this.values[i] == null)
+                return;
+            int home = slot(this.keys[i]);
+            boolean stays = hole <= i ? (hole < home && home <= i) : (hole < home || home <= i);
+            if(stays)
+                continue;
+            this.keys[hole] = this.keys[i];
+            this.values[hole] = this.values[i];
+            this.referenced[hole] = this.referenced[i];
+            this.values[i] = null;
+            hole = i;
+        }
+    }
+
+    public synchronized void report() {
+        System.err.println("memo " + this.name + ": " + this.hits + " hits, " + this.misses + " misses");
+    }
+}
@@ -0,0 +1,3 @@
+public interface Parallel {
+    Object runTask(int id, Object[] arguments);
+}
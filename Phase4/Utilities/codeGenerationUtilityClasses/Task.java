@@ -0,0 +1,24 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+public class Task extends RecursiveTask<Object> {
+    private final Parallel owner;
+    private final int id;
+    private final Object[] arguments;
+
+    public Task(Parallel owner, int id, Object[] arguments) {
+        this.owner = owner;
+        this.id = id;
+        this.arguments = arguments;
+    }
+
+    //forking only pays off while there are idle workers to steal the task
+    public static boolean shouldFork() {
+        return ForkJoinPool.getCommonPoolParallelism() > 1 && ForkJoinTask.getSurplusQueuedTaskCount() < 3;
+    }
+
+    protected Object compute() {
+        return this.owner.runTask(this.id, this.arguments);
+    }
+}
@@ -1,13 +1,51 @@
 package main;
 
+import main.visitor.optimizer.Inliner;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import java.io.IOException;
 
 public class Jepeto {
     public static void main(String[] args) throws IOException {
-        CharStream reader = CharStreams.fromFileName(args[0]);
         JepetoCompiler jepetoCompiler = new JepetoCompiler();
+        String fileName = null;
+        for (String arg : args) {
+            if (arg.equals("--in-process"))
+                jepetoCompiler.setInProcess(true);
+            else if (arg.equals("--backend=bytecode"))
+                jepetoCompiler.setBytecodeBackend(true);
+            else if (arg.equals("--backend=jasmin"))
+                jepetoCompiler.setBytecodeBackend(false);
+            else if (arg.equals("--trampoline"))
+                jepetoCompiler.setTrampoline(true);
+            else if (arg.equals("--defunctionalize"))
+                jepetoCompiler.setDefunctionalize(true);
+            else if (arg.equals("--memoize"))
+                jepetoCompiler.setMemoize(true);
+            else if (arg.equals("--parallel"))
+                jepetoCompiler.setParallel(true);
+            else if (arg.equals("--peephole"))
+                jepetoCompiler.setPeephole(true);
+            else if (arg.equals("--monomorphize"))
+                jepetoCompiler.setMonomorphize(true);
+            else if (arg.equals("--dump-ir"))
+                jepetoCompiler.setDumpIr(true);
+            else if (arg.equals("--hoist"))
+                jepetoCompiler.setHoistConstants(true);
+            else if (arg.equals("--cse"))
+                jepetoCompiler.setEliminateCommonSubexpressions(true);
+            else if (arg.equals("--dce"))
+                jepetoCompiler.setEliminateDeadCode(true);
+            else if (arg.equals("--fold"))
+                jepetoCompiler.setFold(true);
+            else if (arg.equals("--inline"))
+                jepetoCompiler.setInlineBudget(Inliner.DEFAULT_BUDGET);
+            else if (arg.startsWith("--inline="))
+                jepetoCompiler.setInlineBudget(Integer.parseInt(arg.substring("--inline=".length())));
+            else
+                fileName = arg;
+        }
+        CharStream reader = CharStreams.fromFileName(fileName);
         jepetoCompiler.compile(reader);
     }
 }
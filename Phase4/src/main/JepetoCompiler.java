@@ -1,9 +1,18 @@
 package main;
 
 import main.ast.nodes.Program;
+import main.runner.InProcessRunner;
 import main.visitor.*;
 import main.visitor.codeGenerator.CodeGenerator;
+import main.visitor.codeGenerator.Peephole;
+import main.visitor.codeGenerator.backend.StackMachineBackend;
+import main.visitor.codeGenerator.backend.BackendException;
+import main.visitor.codeGenerator.backend.BytecodeBackend;
+import main.visitor.codeGenerator.backend.JasminBackend;
 import main.visitor.name.NameAnalyser;
+import main.visitor.optimizer.ConstantFolder;
+import main.visitor.optimizer.DeadCodeEliminator;
+import main.visitor.optimizer.Inliner;
 import main.visitor.type.TypeCheker;
 import main.visitor.type.TypeSetter;
 import org.antlr.v4.runtime.CharStream;
@@ -11,8 +20,98 @@ import org.antlr.v4.runtime.CommonTokenStream;
 import parsers.*;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
 
 public class JepetoCompiler {
+    private static final String[] jasminFiles = {"Fptr.j", "List.j", "IntList.j", "BoolList.j", "Memo.j", "Parallel.j", "Task.j", "Main.j"};
+    private static final String[] runtimeJasminFiles = {"Fptr.j", "List.j", "IntList.j", "BoolList.j", "Memo.j", "Parallel.j", "Task.j"};
+    private boolean inProcess = false;
+    private boolean bytecodeBackend = false;
+    private boolean trampoline = false;
+    private boolean defunctionalize = false;
+    private boolean memoize = false;
+    private boolean parallel = false;
+    //node budget of an inlined body, 0 when inlining is off
+    private int inlineBudget = 0;
+    private boolean fold = false;
+    private boolean eliminateDeadCode = false;
+    private boolean eliminateCommonSubexpressions = false;
+    private boolean monomorphize = false;
+    private boolean peephole = false;
+    private boolean dumpIr = false;
+    private boolean hoistConstants = false;
+
+    public void setInProcess(boolean inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    public void setBytecodeBackend(boolean bytecodeBackend) {
+        this.bytecodeBackend = bytecodeBackend;
+    }
+
+    public void setTrampoline(boolean trampoline) {
+        this.trampoline = trampoline;
+    }
+
+    public void setDefunctionalize(boolean defunctionalize) {
+        this.defunctionalize = defunctionalize;
+    }
+
+    public void setMemoize(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public void setInlineBudget(int inlineBudget) {
+        this.inlineBudget = inlineBudget;
+    }
+
+    public void setFold(boolean fold) {
+        this.fold = fold;
+    }
+
+    public void setEliminateDeadCode(boolean eliminateDeadCode) {
+        this.eliminateDeadCode = eliminateDeadCode;
+    }
+
+    public void setPeephole(boolean peephole) {
+        this.peephole = peephole;
+    }
+
+    public void setHoistConstants(boolean hoistConstants) {
+        this.hoistConstants = hoistConstants;
+    }
+
+    public void setDumpIr(boolean dumpIr) {
+        this.dumpIr = dumpIr;
+    }
+
+    public void setMonomorphize(boolean monomorphize) {
+        this.monomorphize = monomorphize;
+    }
+
+    public void setEliminateCommonSubexpressions(boolean eliminateCommonSubexpressions) {
+        this.eliminateCommonSubexpressions = eliminateCommonSubexpressions;
+    }
+
+    //defunctionalized programs call functions through tags and never load Fptr, the other runtime classes belong to their modes
+    private ArrayList<String> assembledFiles(String[] files) {
+        ArrayList<String> assembled = new ArrayList<>(Arrays.asList(files));
+        if (defunctionalize)
+            assembled.remove("Fptr.j");
+        if (!memoize)
+            assembled.remove("Memo.j");
+        if (!parallel) {
+            assembled.remove("Parallel.j");
+            assembled.remove("Task.j");
+        }
+        return assembled;
+    }
 
     public void compile(CharStream textStream) {
         JepetoLexer jepetoLexer = new JepetoLexer(textStream);
@@ -28,6 +127,7 @@ public class JepetoCompiler {
         if(numberOfErrors > 0)
             System.exit(1);
         TypeSetter typeSetter = new TypeSetter();
+        typeSetter.setMonomorphize(monomorphize);
         program.accept(typeSetter);
         TypeCheker typeCheker = new TypeCheker(typeSetter.getVisited());
         program.accept(typeCheker);
@@ -36,37 +136,106 @@ public class JepetoCompiler {
             System.exit(1);
         System.out.println("Compilation successful");
 
-        CodeGenerator codeGenerator = new CodeGenerator(typeCheker.getExpressionTypeChecker() , typeSetter.getVisited());
-        program.accept(codeGenerator);
+        if (inlineBudget > 0)
+            new Inliner(typeSetter.getVisited(), inlineBudget).run(program);
+        if (fold)
+            new ConstantFolder(typeSetter.getVisited()).run(program);
+        DeadCodeEliminator deadCodeEliminator = null;
+        if (eliminateDeadCode) {
+            deadCodeEliminator = new DeadCodeEliminator(typeSetter.getVisited());
+            deadCodeEliminator.run(program);
+        }
+
+        StackMachineBackend backend;
+        if (bytecodeBackend)
+            backend = new BytecodeBackend();
+        else
+            backend = new JasminBackend("./output/Main.j");
+        CodeGenerator codeGenerator = new CodeGenerator(typeCheker.getExpressionTypeChecker() , typeSetter.getVisited(), backend);
+        codeGenerator.setTrampoline(trampoline);
+        codeGenerator.setDefunctionalize(defunctionalize);
+        codeGenerator.setMemoize(memoize);
+        codeGenerator.setParallel(parallel);
+        codeGenerator.setEliminateCommonSubexpressions(eliminateCommonSubexpressions);
+        codeGenerator.setDumpIr(dumpIr);
+        codeGenerator.setHoistConstants(hoistConstants);
+        Peephole peepholeOptimizer = peephole ? new Peephole() : null;
+        if (peepholeOptimizer != null)
+            backend.addMethodPass(peepholeOptimizer);
+        try {
+            program.accept(codeGenerator);
+        } catch (BackendException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+        if (deadCodeEliminator != null)
+            System.out.println("Dead code: removed " + deadCodeEliminator.getRemovedNodes() + " nodes");
+        if (peepholeOptimizer != null) {
+            ArrayList<String> hits = new ArrayList<>();
+            for (Map.Entry<String, Integer> rule : peepholeOptimizer.getHits().entrySet())
+                hits.add(rule.getKey() + " " + rule.getValue());
+            System.out.println("Peephole: " + String.join(", ", hits));
+        }
+
+        if (bytecodeBackend)
+            runClassFiles((BytecodeBackend) backend);
+        else if (inProcess)
+            runJasminFilesInProcess();
+        else
+            runJasminFiles();
+    }
 
-        runJasminFiles();
+    private void runClassFiles(BytecodeBackend backend) {
+        System.out.println("\n-------------------Generating Class Files-------------------");
+        File dir = new File("./output");
+        InProcessRunner runner = new InProcessRunner(dir);
+        boolean assembled = true;
+        for (String jasminFile : assembledFiles(runtimeJasminFiles))
+            assembled &= runner.assemble(jasminFile);
+        runner.addClass(backend.getClassName(), backend.getClassBytes());
+        System.out.println("\n---------------------------Output---------------------------");
+        if (!assembled)
+            return;
+        if (inProcess)
+            runner.run("Main");
+        else {
+            try {
+                runProcess(new ProcessBuilder("java", "Main"), dir);
+            } catch (IOException | InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void runJasminFilesInProcess() {
+        System.out.println("\n-------------------Generating Class Files-------------------");
+        InProcessRunner runner = new InProcessRunner(new File("./output"));
+        boolean assembled = true;
+        for (String jasminFile : assembledFiles(jasminFiles))
+            assembled &= runner.assemble(jasminFile);
+        System.out.println("\n---------------------------Output---------------------------");
+        if (assembled)
+            runner.run("Main");
     }
 
     private void runJasminFiles() {
         try {
             System.out.println("\n-------------------Generating Class Files-------------------");
             File dir = new File("./output");
-            Process process = Runtime.getRuntime().exec("java -jar jasmin.jar *.j", null, dir);
-            printResults(process.getInputStream());
-            printResults(process.getErrorStream());
+            ArrayList<String> assembleCommand = new ArrayList<>(Arrays.asList("java", "-jar", "jasmin.jar"));
+            assembleCommand.addAll(assembledFiles(jasminFiles));
+            runProcess(new ProcessBuilder(assembleCommand), dir);
             System.out.println("\n---------------------------Output---------------------------");
-            process = Runtime.getRuntime().exec("java Main", null, dir);
-            printResults(process.getInputStream());
-            printResults(process.getErrorStream());
-        } catch (IOException e) {
+            runProcess(new ProcessBuilder("java", "Main"), dir);
+        } catch (IOException | InterruptedException e) {
             e.printStackTrace();
         }
     }
 
-    private void printResults(InputStream stream) {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-        String line;
-        try {
-            while ((line = reader.readLine()) != null)
-                System.out.println(line);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private void runProcess(ProcessBuilder processBuilder, File dir) throws IOException, InterruptedException {
+        System.out.flush();
+        Process process = processBuilder.directory(dir).inheritIO().start();
+        process.waitFor();
     }
 
 }
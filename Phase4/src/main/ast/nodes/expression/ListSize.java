@@ -10,6 +10,9 @@ public class ListSize extends Expression {
     public Expression getInstance() {
         return instance;
     }
+    public void setInstance(Expression instance) {
+        this.instance = instance;
+    }
     @Override
     public String toString() {
         return "listSize";
@@ -0,0 +1,67 @@
+package main.ir;
+
+import java.util.*;
+
+//a fact per block boundary, solved to a fixed point over the control flow graph of a method
+//a forward analysis flows from the entry along jumps, a backward one from the blocks that leave the method
+public abstract class Dataflow<B, T> {
+    protected final FlowGraph<B> graph;
+    private final boolean forward;
+    private final Map<B, T> in = new HashMap<>();
+    private final Map<B, T> out = new HashMap<>();
+
+    protected Dataflow(FlowGraph<B> graph, boolean forward) {
+        this.graph = graph;
+        this.forward = forward;
+    }
+
+    //the fact at the entry of a forward analysis, or after the exits of a backward one
+    protected abstract T boundary();
+
+    //the fact a block starts with before anything flows into it
+    protected abstract T initial();
+
+    protected abstract T meet(T first, T second);
+
+    //the fact on the other side of the block, must not change value
+    protected abstract T transfer(B block, T value);
+
+    public void solve() {
+        List<B> blocks = graph.getBlocks();
+        for (B block : blocks) {
+            in.put(block, initial());
+            out.put(block, initial());
+        }
+        Deque<B> pending = new ArrayDeque<>();
+        Set<B> queued = new HashSet<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            B block = blocks.get(forward ? i : blocks.size() - 1 - i);
+            pending.add(block);
+            queued.add(block);
+        }
+        while (!pending.isEmpty()) {
+            B block = pending.poll();
+            queued.remove(block);
+            List<B> sources = forward ? graph.getPredecessors(block) : graph.getSuccessors(block);
+            T value = forward && block == graph.getEntry() || !forward && sources.isEmpty() ? boundary() : initial();
+            for (B source : sources)
+                value = meet(value, forward ? out.get(source) : in.get(source));
+            T result = transfer(block, value);
+            (forward ? in : out).put(block, value);
+            if (result.equals((forward ? out : in).get(block)))
+                continue;
+            (forward ? out : in).put(block, result);
+            for (B next : forward ? graph.getSuccessors(block) : graph.getPredecessors(block))
+                if (queued.add(next))
+                    pending.add(next);
+        }
+    }
+
+    public T getIn(B block) {
+        return in.get(block);
+    }
+
+    public T getOut(B block) {
+        return out.get(block);
+    }
+}
@@ -0,0 +1,15 @@
+package main.ir;
+
+import java.util.List;
+
+//blocks and the edges between them, for the IR of a method
+public interface FlowGraph<B> {
+    List<B> getBlocks();
+
+    //null for a method without code
+    B getEntry();
+
+    List<B> getSuccessors(B block);
+
+    List<B> getPredecessors(B block);
+}
@@ -0,0 +1,69 @@
+package main.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//instructions run one after another, phis first, ending in the one terminator that says where control goes next
+public class IrBlock {
+    private final String label;
+    private final ArrayList<IrInstruction> instructions = new ArrayList<>();
+
+    IrBlock(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public ArrayList<IrInstruction> getInstructions() {
+        return instructions;
+    }
+
+    void insert(int index, IrInstruction instruction) {
+        instructions.add(index, instruction);
+        instruction.setBlock(this);
+    }
+
+    public void remove(IrInstruction instruction) {
+        instructions.remove(instruction);
+        instruction.setBlock(null);
+    }
+
+    //null while the block is still being built
+    public IrInstruction getTerminator() {
+        if (instructions.isEmpty())
+            return null;
+        IrInstruction last = instructions.get(instructions.size() - 1);
+        return last.isTerminator() ? last : null;
+    }
+
+    public boolean isTerminated() {
+        return getTerminator() != null;
+    }
+
+    public List<IrInstruction> getPhis() {
+        List<IrInstruction> phis = new ArrayList<>();
+        for (IrInstruction instruction : instructions) {
+            if (instruction.getOpcode() != IrOpcode.PHI)
+                break;
+            phis.add(instruction);
+        }
+        return phis;
+    }
+
+    public List<IrBlock> getSuccessors() {
+        List<IrBlock> successors = new ArrayList<>();
+        IrInstruction terminator = getTerminator();
+        if (terminator != null)
+            for (IrBlock target : terminator.getTargets())
+                if (!successors.contains(target))
+                    successors.add(target);
+        return successors;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
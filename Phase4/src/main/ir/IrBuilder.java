@@ -0,0 +1,216 @@
+package main.ir;
+
+import java.util.Arrays;
+import java.util.List;
+
+//appends instructions to a function, at the end of the block laid out last unless it is placed elsewhere
+//code that follows a terminator goes to a fresh block no jump leads to, which the unreachable block pass drops
+public class IrBuilder {
+    private final IrFunction function;
+    private final IrThis self;
+    //null after a terminator, until the next block is placed
+    private IrBlock block;
+    private int index;
+
+    public IrBuilder(IrFunction function) {
+        this.function = function;
+        this.self = new IrThis(function.getClassName());
+    }
+
+    public IrFunction getFunction() {
+        return function;
+    }
+
+    public IrBlock newBlock(String label) {
+        return function.newBlock(label);
+    }
+
+    //the block code goes to now
+    public IrBlock getBlock() {
+        if (block == null)
+            place(function.newBlock(null));
+        return block;
+    }
+
+    //control can reach the end of what was emitted so far
+    public boolean isOpen() {
+        return block != null && !block.isTerminated();
+    }
+
+    //lays out next after the current block, which falls through to it
+    public void place(IrBlock next) {
+        if (isOpen() && index == block.getInstructions().size())
+            jump(next);
+        function.place(next);
+        block = next;
+        index = 0;
+    }
+
+    //inserts from here on into a block laid out earlier
+    public void positionAt(IrBlock block, int index) {
+        this.block = block;
+        this.index = index;
+    }
+
+    private IrInstruction append(IrOpcode opcode, IrType type, IrValue... operands) {
+        IrInstruction instruction = function.newInstruction(opcode, type, Arrays.asList(operands));
+        IrBlock target = getBlock();
+        target.insert(index, instruction);
+        index += 1;
+        if (instruction.isTerminator())
+            block = null;
+        return instruction;
+    }
+
+    public IrThis self() {
+        return self;
+    }
+
+    public IrValue load(IrVariable variable) {
+        IrInstruction load = append(IrOpcode.LOAD, variable.getType());
+        load.setVariable(variable);
+        return load;
+    }
+
+    public void store(IrVariable variable, IrValue value) {
+        IrInstruction store = append(IrOpcode.STORE, IrType.VOID, value);
+        store.setVariable(variable);
+    }
+
+    //ADD, SUB, MUL, DIV and OR on two ints or two longs, SHL and USHR shift the first by the int second
+    public IrValue binary(IrOpcode opcode, IrValue first, IrValue second) {
+        return append(opcode, first.getType(), first, second);
+    }
+
+    public IrValue negate(IrValue value) {
+        return append(IrOpcode.NEG, value.getType(), value);
+    }
+
+    public IrValue widen(IrValue value) {
+        return append(IrOpcode.WIDEN, IrType.LONG, value);
+    }
+
+    public IrValue box(IrValue value) {
+        String boxClass = value.getType().equals(IrType.BOOL) ? "java/lang/Boolean" : "java/lang/Integer";
+        return append(IrOpcode.BOX, IrType.reference(boxClass), value);
+    }
+
+    //type is INT or BOOL
+    public IrValue unbox(IrValue value, IrType type) {
+        return append(IrOpcode.UNBOX, type, value);
+    }
+
+    public IrValue cast(IrValue value, String className) {
+        IrInstruction cast = append(IrOpcode.CAST, IrType.reference(className), value);
+        cast.setSymbol(className, null, null);
+        return cast;
+    }
+
+    public IrValue instanceOf(IrValue value, String className) {
+        IrInstruction test = append(IrOpcode.INSTANCEOF, IrType.BOOL, value);
+        test.setSymbol(className, null, null);
+        return test;
+    }
+
+    public IrValue newObject(String className) {
+        IrInstruction allocation = append(IrOpcode.NEW, IrType.reference(className));
+        allocation.setSymbol(className, null, null);
+        return allocation;
+    }
+
+    public void init(IrValue object, String descriptor, IrValue... args) {
+        IrValue[] operands = new IrValue[args.length + 1];
+        operands[0] = object;
+        System.arraycopy(args, 0, operands, 1, args.length);
+        IrInstruction init = append(IrOpcode.INIT, IrType.VOID, operands);
+        init.setSymbol(object.getType().getClassName(), "<init>", descriptor);
+    }
+
+    public IrValue newArray(IrType elementType, IrValue length) {
+        return append(IrOpcode.NEWARRAY, IrType.arrayOf(elementType), length);
+    }
+
+    public IrValue arrayLoad(IrValue array, IrValue index) {
+        return append(IrOpcode.ARRAY_LOAD, array.getType().getElementType(), array, index);
+    }
+
+    public void arrayStore(IrValue array, IrValue index, IrValue value) {
+        append(IrOpcode.ARRAY_STORE, IrType.VOID, array, index, value);
+    }
+
+    //INVOKE_VIRTUAL and INVOKE_SPECIAL take the receiver first, null comes back for a void method
+    public IrValue invoke(IrOpcode opcode, String owner, String method, String descriptor, List<IrValue> operands) {
+        IrInstruction invoke = append(opcode, IrType.returnType(descriptor), operands.toArray(new IrValue[0]));
+        invoke.setSymbol(owner, method, descriptor);
+        return invoke.hasValue() ? invoke : null;
+    }
+
+    public IrValue invoke(IrOpcode opcode, String owner, String method, String descriptor, IrValue... operands) {
+        return invoke(opcode, owner, method, descriptor, Arrays.asList(operands));
+    }
+
+    public IrValue getField(IrValue object, String owner, String field, String descriptor) {
+        IrInstruction get = append(IrOpcode.GET_FIELD, IrType.of(descriptor), object);
+        get.setSymbol(owner, field, descriptor);
+        return get;
+    }
+
+    public void putField(IrValue object, String owner, String field, String descriptor, IrValue value) {
+        append(IrOpcode.PUT_FIELD, IrType.VOID, object, value).setSymbol(owner, field, descriptor);
+    }
+
+    public IrValue getStatic(String owner, String field, String descriptor) {
+        IrInstruction get = append(IrOpcode.GET_STATIC, IrType.of(descriptor));
+        get.setSymbol(owner, field, descriptor);
+        return get;
+    }
+
+    public void putStatic(String owner, String field, String descriptor, IrValue value) {
+        append(IrOpcode.PUT_STATIC, IrType.VOID, value).setSymbol(owner, field, descriptor);
+    }
+
+    //a value of the current block chosen by the edge control came in along, values[i] is what blocks[i] passes
+    public IrValue phi(IrType type, List<IrBlock> blocks, List<IrValue> values) {
+        IrBlock target = getBlock();
+        IrInstruction phi = function.newInstruction(IrOpcode.PHI, type, values);
+        phi.getTargets().addAll(blocks);
+        int position = target.getPhis().size();
+        target.insert(position, phi);
+        if (index >= position)
+            index += 1;
+        return phi;
+    }
+
+    public void jump(IrBlock target) {
+        append(IrOpcode.JUMP, IrType.VOID).getTargets().add(target);
+    }
+
+    //goes to target when the operands meet the condition, and on to a new block laid out next otherwise
+    public void branch(IrCondition condition, IrBlock target, IrValue... operands) {
+        IrInstruction branch = append(IrOpcode.BRANCH, IrType.VOID, operands);
+        branch.setCondition(condition);
+        IrBlock next = function.newBlock(null);
+        branch.getTargets().add(target);
+        branch.getTargets().add(next);
+        place(next);
+    }
+
+    public void switchOn(IrValue value, int low, List<IrBlock> targets, IrBlock defaultTarget) {
+        IrInstruction tableswitch = append(IrOpcode.SWITCH, IrType.VOID, value);
+        tableswitch.setLow(low);
+        tableswitch.getTargets().addAll(targets);
+        tableswitch.getTargets().add(defaultTarget);
+    }
+
+    //value is null for a void method
+    public void ret(IrValue value) {
+        if (value == null)
+            append(IrOpcode.RETURN, IrType.VOID);
+        else
+            append(IrOpcode.RETURN, IrType.VOID, value);
+    }
+
+    public void raise(IrValue exception) {
+        append(IrOpcode.THROW, IrType.VOID, exception);
+    }
+}
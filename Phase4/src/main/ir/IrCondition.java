@@ -0,0 +1,27 @@
+package main.ir;
+
+//what a branch tests, one operand is compared with zero or null and two with each other
+public enum IrCondition {
+    EQ, NE, LT, GE, GT, LE, NULL, NONNULL;
+
+    public IrCondition negate() {
+        switch (this) {
+            case EQ:
+                return NE;
+            case NE:
+                return EQ;
+            case LT:
+                return GE;
+            case GE:
+                return LT;
+            case GT:
+                return LE;
+            case LE:
+                return GT;
+            case NULL:
+                return NONNULL;
+            default:
+                return NULL;
+        }
+    }
+}
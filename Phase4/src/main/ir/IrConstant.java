@@ -0,0 +1,50 @@
+package main.ir;
+
+//an int, bool, long or string constant, or null
+public class IrConstant extends IrValue {
+    private final Object value;
+
+    private IrConstant(IrType type, Object value) {
+        super(type);
+        this.value = value;
+    }
+
+    public static IrConstant of(int value) {
+        return new IrConstant(IrType.INT, value);
+    }
+
+    public static IrConstant of(boolean value) {
+        return new IrConstant(IrType.BOOL, value);
+    }
+
+    public static IrConstant of(long value) {
+        return new IrConstant(IrType.LONG, value);
+    }
+
+    public static IrConstant of(String value) {
+        return new IrConstant(IrType.reference("java/lang/String"), value);
+    }
+
+    public static IrConstant nullConstant() {
+        return new IrConstant(IrType.OBJECT, null);
+    }
+
+    //Integer, Boolean, Long or String, null for the null constant
+    public Object getValue() {
+        return value;
+    }
+
+    @Override
+    public boolean isImmediate() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        if (value instanceof String)
+            return "\"" + value + "\"";
+        if (value instanceof Long)
+            return value + "L";
+        return String.valueOf(value);
+    }
+}
@@ -0,0 +1,159 @@
+package main.ir;
+
+import java.util.*;
+
+//one method as blocks of typed instructions, in the order they are laid out
+public class IrFunction {
+    private final String accessFlags;
+    private final String name;
+    private final String descriptor;
+    private final String className;
+    private final ArrayList<IrVariable> parameters = new ArrayList<>();
+    private final ArrayList<IrVariable> temps = new ArrayList<>();
+    private final ArrayList<IrBlock> blocks = new ArrayList<>();
+    private int instructionCount = 0;
+    private int blockCount = 0;
+
+    //parameters are named in order, the ones without a name are p<index>
+    public IrFunction(String className, String accessFlags, String name, String descriptor, List<String> parameterNames) {
+        this.className = className;
+        this.accessFlags = accessFlags;
+        this.name = name;
+        this.descriptor = descriptor;
+        int slot = isStatic() ? 0 : 1;
+        List<IrType> types = IrType.argumentTypes(descriptor);
+        for (int i = 0; i < types.size(); i++) {
+            String parameterName = i < parameterNames.size() ? parameterNames.get(i) : "p" + i;
+            parameters.add(new IrVariable(parameterName, types.get(i), slot));
+            slot += types.get(i).getWords();
+        }
+    }
+
+    public IrFunction(String className, String accessFlags, String name, String descriptor) {
+        this(className, accessFlags, name, descriptor, List.of());
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getAccessFlags() {
+        return accessFlags;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isStatic() {
+        return accessFlags.contains("static");
+    }
+
+    public IrType getReturnType() {
+        return IrType.returnType(descriptor);
+    }
+
+    public List<IrVariable> getParameters() {
+        return parameters;
+    }
+
+    public IrVariable getParameter(int index) {
+        return parameters.get(index);
+    }
+
+    //null when no parameter has the name
+    public IrVariable getParameter(String parameterName) {
+        for (IrVariable parameter : parameters)
+            if (parameter.getName().equals(parameterName))
+                return parameter;
+        return null;
+    }
+
+    public List<IrVariable> getTemps() {
+        return temps;
+    }
+
+    public IrVariable newTemp(IrType type) {
+        IrVariable temp = new IrVariable("t" + temps.size(), type, -1);
+        temps.add(temp);
+        return temp;
+    }
+
+    //a block that is not laid out yet, blocks without a label of their own are numbered
+    public IrBlock newBlock(String label) {
+        blockCount += 1;
+        return new IrBlock(label != null ? label : "Block" + blockCount);
+    }
+
+    IrInstruction newInstruction(IrOpcode opcode, IrType type, List<IrValue> operands) {
+        instructionCount += 1;
+        return new IrInstruction(instructionCount, opcode, type, operands);
+    }
+
+    public ArrayList<IrBlock> getBlocks() {
+        return blocks;
+    }
+
+    void place(IrBlock block) {
+        blocks.add(block);
+    }
+
+    //null for a method without code
+    public IrBlock getEntry() {
+        return blocks.isEmpty() ? null : blocks.get(0);
+    }
+
+    public void replaceUses(IrValue value, IrValue replacement) {
+        for (IrBlock block : blocks)
+            for (IrInstruction instruction : block.getInstructions())
+                for (int i = 0; i < instruction.getOperands().size(); i++)
+                    if (instruction.getOperand(i) == value)
+                        instruction.setOperand(i, replacement);
+    }
+
+    //how many operands refer to each instruction
+    public Map<IrInstruction, Integer> countUses() {
+        Map<IrInstruction, Integer> uses = new HashMap<>();
+        for (IrBlock block : blocks)
+            for (IrInstruction instruction : block.getInstructions())
+                for (IrValue operand : instruction.getOperands())
+                    if (operand instanceof IrInstruction)
+                        uses.merge((IrInstruction) operand, 1, Integer::sum);
+        return uses;
+    }
+
+    //the edges as they are now, a pass that changes them takes a new one
+    public FlowGraph<IrBlock> controlFlow() {
+        Map<IrBlock, List<IrBlock>> predecessors = new HashMap<>();
+        for (IrBlock block : blocks)
+            predecessors.put(block, new ArrayList<>());
+        for (IrBlock block : blocks)
+            for (IrBlock successor : block.getSuccessors())
+                predecessors.computeIfAbsent(successor, k -> new ArrayList<>()).add(block);
+        return new FlowGraph<IrBlock>() {
+            @Override
+            public List<IrBlock> getBlocks() {
+                return blocks;
+            }
+
+            @Override
+            public IrBlock getEntry() {
+                return IrFunction.this.getEntry();
+            }
+
+            @Override
+            public List<IrBlock> getSuccessors(IrBlock block) {
+                return block.getSuccessors();
+            }
+
+            @Override
+            public List<IrBlock> getPredecessors(IrBlock block) {
+                return predecessors.get(block);
+            }
+        };
+    }
+}
@@ -0,0 +1,131 @@
+package main.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//one operation of a block, and the value it defines unless its type is void
+//operands come in the order the JVM pops them, so a method's receiver is the first operand of its invoke
+public class IrInstruction extends IrValue {
+    private final int id;
+    private final IrOpcode opcode;
+    private final List<IrValue> operands;
+    private IrBlock block;
+    //the class, and the field or method with its descriptor, that the instruction names
+    private String owner;
+    private String member;
+    private String descriptor;
+    private IrVariable variable;
+    private IrCondition condition;
+    //jump: the target; branch: taken, then not taken; switch: the cases, then the default; phi: the block each operand comes from
+    private final List<IrBlock> targets = new ArrayList<>();
+    //the case of a switch's first target
+    private int low;
+
+    IrInstruction(int id, IrOpcode opcode, IrType type, List<IrValue> operands) {
+        super(type);
+        this.id = id;
+        this.opcode = opcode;
+        this.operands = new ArrayList<>(operands);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public IrOpcode getOpcode() {
+        return opcode;
+    }
+
+    public List<IrValue> getOperands() {
+        return operands;
+    }
+
+    public IrValue getOperand(int index) {
+        return operands.get(index);
+    }
+
+    public void setOperand(int index, IrValue value) {
+        operands.set(index, value);
+    }
+
+    public IrBlock getBlock() {
+        return block;
+    }
+
+    void setBlock(IrBlock block) {
+        this.block = block;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    void setSymbol(String owner, String member, String descriptor) {
+        this.owner = owner;
+        this.member = member;
+        this.descriptor = descriptor;
+    }
+
+    public IrVariable getVariable() {
+        return variable;
+    }
+
+    void setVariable(IrVariable variable) {
+        this.variable = variable;
+    }
+
+    public IrCondition getCondition() {
+        return condition;
+    }
+
+    void setCondition(IrCondition condition) {
+        this.condition = condition;
+    }
+
+    public List<IrBlock> getTargets() {
+        return targets;
+    }
+
+    public int getLow() {
+        return low;
+    }
+
+    void setLow(int low) {
+        this.low = low;
+    }
+
+    public boolean isTerminator() {
+        return opcode.isTerminator();
+    }
+
+    public boolean hasValue() {
+        return !getType().isVoid();
+    }
+
+    //a phi's operand for the edge from block, null when there is no such edge
+    public IrValue getIncoming(IrBlock block) {
+        int index = targets.indexOf(block);
+        return index < 0 ? null : operands.get(index);
+    }
+
+    public void removeIncoming(IrBlock block) {
+        int index = targets.indexOf(block);
+        if (index < 0)
+            return;
+        targets.remove(index);
+        operands.remove(index);
+    }
+
+    @Override
+    public String getName() {
+        return "%" + id;
+    }
+}
@@ -0,0 +1,38 @@
+package main.ir;
+
+public enum IrOpcode {
+    //locals
+    LOAD, STORE,
+    //int arithmetic, and the long arithmetic memo keys are packed with
+    ADD, SUB, MUL, DIV, NEG, SHL, USHR, OR, WIDEN,
+    //int and bool to Integer and Boolean and back
+    BOX, UNBOX,
+    CAST, INSTANCEOF,
+    //an allocated object is not usable until INIT has run its constructor on it
+    NEW, INIT,
+    NEWARRAY, ARRAY_LOAD, ARRAY_STORE,
+    INVOKE_VIRTUAL, INVOKE_STATIC, INVOKE_SPECIAL,
+    GET_FIELD, PUT_FIELD, GET_STATIC, PUT_STATIC,
+    //the value that came in along the edge control arrived by
+    PHI,
+    JUMP, BRANCH, SWITCH, RETURN, THROW;
+
+    public boolean isTerminator() {
+        return this == JUMP || this == BRANCH || this == SWITCH || this == RETURN || this == THROW;
+    }
+
+    public boolean isInvoke() {
+        return this == INVOKE_VIRTUAL || this == INVOKE_STATIC || this == INVOKE_SPECIAL;
+    }
+
+    //neither has an effect nor can throw, so an unused one can be dropped
+    public boolean isPure() {
+        switch (this) {
+            case LOAD: case ADD: case SUB: case MUL: case NEG: case SHL: case USHR: case OR: case WIDEN:
+            case BOX: case INSTANCEOF: case GET_STATIC: case PHI:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package main.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//a readable dump of a function, one instruction per line with its JVM type and source type
+public class IrPrinter {
+    public static String print(IrFunction function) {
+        StringBuilder text = new StringBuilder();
+        text.append("function ").append(function.getAccessFlags()).append(' ').append(function.getName())
+                .append(function.getDescriptor());
+        List<String> parameters = new ArrayList<>();
+        for (IrVariable parameter : function.getParameters())
+            parameters.add(parameter.getName());
+        text.append(" (").append(String.join(", ", parameters)).append(")\n");
+        for (IrBlock block : function.getBlocks()) {
+            text.append(block.getLabel()).append(":\n");
+            for (IrInstruction instruction : block.getInstructions())
+                text.append('\t').append(print(instruction)).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static boolean isField(IrInstruction instruction) {
+        switch (instruction.getOpcode()) {
+            case GET_FIELD: case PUT_FIELD: case GET_STATIC: case PUT_STATIC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static String print(IrInstruction instruction) {
+        StringBuilder text = new StringBuilder();
+        if (instruction.hasValue())
+            text.append(instruction.getName()).append(" = ");
+        text.append(instruction.getOpcode().name().toLowerCase());
+        if (instruction.getCondition() != null)
+            text.append(' ').append(instruction.getCondition().name().toLowerCase());
+        if (instruction.getOwner() != null) {
+            text.append(' ').append(instruction.getOwner());
+            if (instruction.getMember() != null)
+                text.append('/').append(instruction.getMember()).append(isField(instruction) ? " " : "").append(instruction.getDescriptor());
+        }
+        if (instruction.getVariable() != null)
+            text.append(' ').append(instruction.getVariable());
+        List<String> operands = new ArrayList<>();
+        for (int i = 0; i < instruction.getOperands().size(); i++) {
+            String operand = instruction.getOperand(i).getName();
+            if (instruction.getOpcode() == IrOpcode.PHI)
+                operand = "[" + instruction.getTargets().get(i) + ": " + operand + "]";
+            operands.add(operand);
+        }
+        if (!operands.isEmpty())
+            text.append(' ').append(String.join(", ", operands));
+        if (instruction.getOpcode() == IrOpcode.SWITCH)
+            text.append(" from ").append(instruction.getLow());
+        if (instruction.isTerminator() && !instruction.getTargets().isEmpty()) {
+            List<String> targets = new ArrayList<>();
+            for (IrBlock target : instruction.getTargets())
+                targets.add(target.getLabel());
+            text.append(" -> ").append(String.join(", ", targets));
+        }
+        if (instruction.hasValue()) {
+            text.append(" : ").append(instruction.getType());
+            if (instruction.getSourceType() != null)
+                text.append(' ').append(instruction.getSourceType());
+        }
+        return text.toString();
+    }
+}
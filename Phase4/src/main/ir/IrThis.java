@@ -0,0 +1,18 @@
+package main.ir;
+
+//the instance an instance method runs on
+public class IrThis extends IrValue {
+    public IrThis(String className) {
+        super(IrType.reference(className));
+    }
+
+    @Override
+    public boolean isImmediate() {
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "this";
+    }
+}
@@ -0,0 +1,111 @@
+package main.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//how a value is held on the JVM, named by its descriptor
+public class IrType {
+    public static final IrType INT = new IrType("I");
+    public static final IrType BOOL = new IrType("Z");
+    public static final IrType LONG = new IrType("J");
+    public static final IrType VOID = new IrType("V");
+    public static final IrType OBJECT = reference("java/lang/Object");
+
+    private final String descriptor;
+
+    private IrType(String descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    public static IrType of(String descriptor) {
+        switch (descriptor) {
+            case "I":
+                return INT;
+            case "Z":
+                return BOOL;
+            case "J":
+                return LONG;
+            case "V":
+                return VOID;
+            default:
+                return new IrType(descriptor);
+        }
+    }
+
+    //a class name such as "java/lang/Integer", or an array descriptor such as "[I"
+    public static IrType reference(String className) {
+        return new IrType(className.startsWith("[") ? className : "L" + className + ";");
+    }
+
+    public static IrType arrayOf(IrType element) {
+        return new IrType("[" + element.descriptor);
+    }
+
+    public static IrType returnType(String methodDescriptor) {
+        return of(methodDescriptor.substring(methodDescriptor.indexOf(')') + 1));
+    }
+
+    public static List<IrType> argumentTypes(String methodDescriptor) {
+        List<IrType> types = new ArrayList<>();
+        int i = methodDescriptor.indexOf('(') + 1;
+        while (methodDescriptor.charAt(i) != ')') {
+            int start = i;
+            while (methodDescriptor.charAt(i) == '[')
+                i++;
+            if (methodDescriptor.charAt(i) == 'L')
+                i = methodDescriptor.indexOf(';', i);
+            i++;
+            types.add(of(methodDescriptor.substring(start, i)));
+        }
+        return types;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    public boolean isReference() {
+        return descriptor.startsWith("L") || descriptor.startsWith("[");
+    }
+
+    public boolean isArray() {
+        return descriptor.startsWith("[");
+    }
+
+    public boolean isVoid() {
+        return this == VOID;
+    }
+
+    public IrType getElementType() {
+        return of(descriptor.substring(1));
+    }
+
+    //the name checkcast, new and anewarray take, arrays keep their descriptor
+    public String getClassName() {
+        if (isArray())
+            return descriptor;
+        return descriptor.substring(1, descriptor.length() - 1);
+    }
+
+    //local slots or stack words the value takes
+    public int getWords() {
+        if (isVoid())
+            return 0;
+        return this == LONG ? 2 : 1;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof IrType && ((IrType) other).descriptor.equals(descriptor);
+    }
+
+    @Override
+    public int hashCode() {
+        return descriptor.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return descriptor;
+    }
+}
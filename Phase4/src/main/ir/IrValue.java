@@ -0,0 +1,35 @@
+package main.ir;
+
+import main.ast.types.Type;
+
+//anything an instruction can take as an operand
+//the JVM type says how the value is held, the source type is what the type checker gave the expression it comes from
+public abstract class IrValue {
+    private final IrType type;
+    private Type sourceType;
+
+    protected IrValue(IrType type) {
+        this.type = type;
+    }
+
+    public IrType getType() {
+        return type;
+    }
+
+    //null for values no expression stands for, such as a memo key or a task's argument array
+    public Type getSourceType() {
+        return sourceType;
+    }
+
+    public void setSourceType(Type sourceType) {
+        this.sourceType = sourceType;
+    }
+
+    //constants and the instance can be pushed wherever they are needed, so they never wait on the stack
+    public boolean isImmediate() {
+        return false;
+    }
+
+    //how the value is written as an operand in a dump
+    public abstract String getName();
+}
@@ -0,0 +1,37 @@
+package main.ir;
+
+//a local of a method, either a parameter in its fixed slot or a temp that instruction selection places
+//unlike values, variables can be stored more than once, which is how arguments are reassigned and loops count
+public class IrVariable {
+    private final String name;
+    private final IrType type;
+    //-1 for temps
+    private final int slot;
+
+    IrVariable(String name, IrType type, int slot) {
+        this.name = name;
+        this.type = type;
+        this.slot = slot;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public IrType getType() {
+        return type;
+    }
+
+    public boolean isParameter() {
+        return slot >= 0;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
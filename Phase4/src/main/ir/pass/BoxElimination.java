@@ -0,0 +1,39 @@
+package main.ir.pass;
+
+import main.ir.*;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+//an unboxed box is the value that was boxed, and a cast to the class a value already has is the value
+public class BoxElimination implements IrPass {
+    private static IrValue simplified(IrInstruction instruction) {
+        IrValue operand = instruction.getOperands().isEmpty() ? null : instruction.getOperand(0);
+        if (instruction.getOpcode() == IrOpcode.UNBOX && operand instanceof IrInstruction
+                && ((IrInstruction) operand).getOpcode() == IrOpcode.BOX
+                && ((IrInstruction) operand).getOperand(0).getType().equals(instruction.getType()))
+            return ((IrInstruction) operand).getOperand(0);
+        if (instruction.getOpcode() == IrOpcode.CAST && operand.getType().equals(instruction.getType()))
+            return operand;
+        return null;
+    }
+
+    @Override
+    public void run(IrFunction function) {
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : new ArrayList<>(block.getInstructions())) {
+                IrValue replacement = simplified(instruction);
+                if (replacement == null)
+                    continue;
+                function.replaceUses(instruction, replacement);
+                block.remove(instruction);
+            }
+        }
+        //boxes whose every use was unboxed are left without one
+        Map<IrInstruction, Integer> uses = function.countUses();
+        for (IrBlock block : function.getBlocks())
+            for (IrInstruction instruction : new ArrayList<>(block.getInstructions()))
+                if (instruction.getOpcode() == IrOpcode.BOX && !uses.containsKey(instruction))
+                    block.remove(instruction);
+    }
+}
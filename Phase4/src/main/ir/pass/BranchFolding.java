@@ -0,0 +1,67 @@
+package main.ir.pass;
+
+import main.ir.*;
+
+import java.util.ArrayList;
+
+//a branch on constants always goes the same way, so it becomes a jump and the edge it never takes is dropped
+public class BranchFolding implements IrPass {
+    private static int compared(IrValue value) {
+        Object constant = ((IrConstant) value).getValue();
+        if (constant instanceof Boolean)
+            return (Boolean) constant ? 1 : 0;
+        return (Integer) constant;
+    }
+
+    private static boolean holds(IrCondition condition, int difference) {
+        switch (condition) {
+            case EQ:
+                return difference == 0;
+            case NE:
+                return difference != 0;
+            case LT:
+                return difference < 0;
+            case GE:
+                return difference >= 0;
+            case GT:
+                return difference > 0;
+            default:
+                return difference <= 0;
+        }
+    }
+
+    //null when the operands are not all int or bool constants
+    private static Boolean decide(IrInstruction branch) {
+        for (IrValue operand : branch.getOperands()) {
+            if (!(operand instanceof IrConstant))
+                return null;
+            Object constant = ((IrConstant) operand).getValue();
+            if (!(constant instanceof Integer || constant instanceof Boolean))
+                return null;
+        }
+        int first = compared(branch.getOperand(0));
+        int second = branch.getOperands().size() > 1 ? compared(branch.getOperand(1)) : 0;
+        return holds(branch.getCondition(), Integer.compare(first, second));
+    }
+
+    @Override
+    public void run(IrFunction function) {
+        IrBuilder builder = new IrBuilder(function);
+        for (IrBlock block : new ArrayList<>(function.getBlocks())) {
+            IrInstruction terminator = block.getTerminator();
+            if (terminator == null || terminator.getOpcode() != IrOpcode.BRANCH)
+                continue;
+            Boolean taken = decide(terminator);
+            if (taken == null)
+                continue;
+            IrBlock target = terminator.getTargets().get(taken ? 0 : 1);
+            IrBlock skipped = terminator.getTargets().get(taken ? 1 : 0);
+            block.remove(terminator);
+            builder.positionAt(block, block.getInstructions().size());
+            builder.jump(target);
+            if (skipped != target)
+                for (IrInstruction phi : skipped.getPhis())
+                    phi.removeIncoming(block);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package main.ir.pass;
+
+import main.ir.*;
+
+import java.util.*;
+
+//removes stores nothing loads afterwards, then every value no one uses if computing it has no effect
+public class DeadStores implements IrPass {
+    @Override
+    public void run(IrFunction function) {
+        VariableLiveness liveness = new VariableLiveness(function);
+        for (IrBlock block : function.getBlocks()) {
+            Set<IrVariable> live = new HashSet<>(liveness.getOut(block));
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                IrInstruction instruction = instructions.get(i);
+                if (instruction.getOpcode() == IrOpcode.STORE && !live.contains(instruction.getVariable())) {
+                    block.remove(instruction);
+                    continue;
+                }
+                liveness.step(instruction, live);
+            }
+        }
+        boolean removed = true;
+        while (removed) {
+            removed = false;
+            Map<IrInstruction, Integer> uses = function.countUses();
+            for (IrBlock block : function.getBlocks())
+                for (IrInstruction instruction : new ArrayList<>(block.getInstructions()))
+                    if (instruction.getOpcode().isPure() && instruction.hasValue() && !uses.containsKey(instruction)) {
+                        block.remove(instruction);
+                        removed = true;
+                    }
+        }
+    }
+}
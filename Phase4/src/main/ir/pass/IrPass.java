@@ -0,0 +1,8 @@
+package main.ir.pass;
+
+import main.ir.IrFunction;
+
+//a rewrite of one function's IR, run after the function is lowered and before its instructions are selected
+public interface IrPass {
+    void run(IrFunction function);
+}
@@ -0,0 +1,41 @@
+package main.ir.pass;
+
+import main.ir.IrBlock;
+import main.ir.IrFunction;
+import main.ir.IrInstruction;
+
+import java.util.*;
+
+//drops the blocks no path from the entry reaches, such as code after a return or past a folded branch, and their edges into phis
+public class UnreachableBlocks implements IrPass {
+    @Override
+    public void run(IrFunction function) {
+        if (function.getEntry() == null)
+            return;
+        Set<IrBlock> reached = new HashSet<>();
+        Deque<IrBlock> pending = new ArrayDeque<>();
+        reached.add(function.getEntry());
+        pending.add(function.getEntry());
+        while (!pending.isEmpty())
+            for (IrBlock successor : pending.poll().getSuccessors())
+                if (reached.add(successor))
+                    pending.add(successor);
+
+        List<IrBlock> dropped = new ArrayList<>();
+        for (IrBlock block : function.getBlocks())
+            if (!reached.contains(block))
+                dropped.add(block);
+        function.getBlocks().removeAll(dropped);
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction phi : block.getPhis()) {
+                for (IrBlock source : dropped)
+                    phi.removeIncoming(source);
+                //a phi left with one edge is the value along it
+                if (phi.getOperands().size() == 1) {
+                    function.replaceUses(phi, phi.getOperand(0));
+                    block.remove(phi);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package main.ir.pass;
+
+import main.ir.*;
+
+import java.util.*;
+
+//variables whose current value may still be loaded
+//values kept in a variable from where they are made to where they are used, as instruction selection keeps the values
+//it cannot leave on the stack, are followed like the variables the IR loads and stores itself
+public class VariableLiveness extends Dataflow<IrBlock, Set<IrVariable>> {
+    private final Map<IrInstruction, IrVariable> kept;
+
+    public VariableLiveness(IrFunction function) {
+        this(function, Map.of());
+    }
+
+    public VariableLiveness(IrFunction function, Map<IrInstruction, IrVariable> kept) {
+        super(function.controlFlow(), false);
+        this.kept = kept;
+        solve();
+    }
+
+    @Override
+    protected Set<IrVariable> boundary() {
+        return new HashSet<>();
+    }
+
+    @Override
+    protected Set<IrVariable> initial() {
+        return new HashSet<>();
+    }
+
+    @Override
+    protected Set<IrVariable> meet(Set<IrVariable> first, Set<IrVariable> second) {
+        Set<IrVariable> live = new HashSet<>(first);
+        live.addAll(second);
+        return live;
+    }
+
+    //the variables live before the instruction from those live after it, each variable it writes is handed to stored
+    //together with what is live right after the write
+    public void step(IrInstruction instruction, Set<IrVariable> live, Stored stored) {
+        IrVariable own = kept.get(instruction);
+        if (own != null && own != instruction.getVariable() && instruction.getOpcode() != IrOpcode.PHI)
+            define(own, live, stored);
+        if (instruction.getOpcode() == IrOpcode.STORE)
+            define(instruction.getVariable(), live, stored);
+        else if (instruction.getOpcode() == IrOpcode.LOAD)
+            live.add(instruction.getVariable());
+        if (instruction.getOpcode() == IrOpcode.PHI)
+            return;
+        for (IrValue operand : instruction.getOperands())
+            use(operand, live);
+        //a jump writes the phis of its target one after another, each right after loading what it takes
+        if (instruction.getOpcode() == IrOpcode.JUMP) {
+            for (IrInstruction phi : instruction.getTargets().get(0).getPhis()) {
+                if (kept.containsKey(phi))
+                    define(kept.get(phi), live, stored);
+                use(phi.getIncoming(instruction.getBlock()), live);
+            }
+        }
+    }
+
+    public void step(IrInstruction instruction, Set<IrVariable> live) {
+        step(instruction, live, (variable, after) -> { });
+    }
+
+    private static void define(IrVariable variable, Set<IrVariable> live, Stored stored) {
+        stored.accept(variable, live);
+        live.remove(variable);
+    }
+
+    private void use(IrValue value, Set<IrVariable> live) {
+        if (kept.containsKey(value))
+            live.add(kept.get(value));
+    }
+
+    @Override
+    protected Set<IrVariable> transfer(IrBlock block, Set<IrVariable> value) {
+        Set<IrVariable> live = new HashSet<>(value);
+        List<IrInstruction> instructions = block.getInstructions();
+        for (int i = instructions.size() - 1; i >= 0; i--)
+            step(instructions.get(i), live);
+        return live;
+    }
+
+    public interface Stored {
+        void accept(IrVariable variable, Set<IrVariable> liveAfter);
+    }
+}
@@ -0,0 +1,35 @@
+package main.runner;
+
+import java.util.Map;
+
+public class ByteArrayClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    public ByteArrayClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+        super(parent);
+        this.classes = classes;
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        //generated classes live in the default package, so they must not be shadowed by the compiler's classpath
+        if (!classes.containsKey(name))
+            return super.loadClass(name, resolve);
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null)
+                loaded = findClass(name);
+            if (resolve)
+                resolveClass(loaded);
+            return loaded;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classes.get(name);
+        if (bytes == null)
+            throw new ClassNotFoundException(name);
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
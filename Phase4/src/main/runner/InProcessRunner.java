@@ -0,0 +1,64 @@
+package main.runner;
+
+import jasmin.ClassFile;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class InProcessRunner {
+    private final File directory;
+    private final Map<String, byte[]> classes;
+
+    public InProcessRunner(File directory) {
+        this.directory = directory;
+        this.classes = new LinkedHashMap<>();
+    }
+
+    public boolean assemble(String jasminFileName) {
+        try {
+            Reader reader = new BufferedReader(new FileReader(new File(directory, jasminFileName)));
+            ClassFile classFile = new ClassFile();
+            classFile.readJasmin(reader, jasminFileName, false);
+            reader.close();
+            if (classFile.errorCount() > 0) {
+                System.out.println(jasminFileName + ": Found " + classFile.errorCount() + " errors");
+                return false;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            classFile.write(bytes);
+            addClass(classFile.getClassName(), bytes.toByteArray());
+            return true;
+        } catch (Exception e) {
+            System.out.println(jasminFileName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    public void addClass(String className, byte[] bytes) {
+        classes.put(className, bytes);
+        try {
+            OutputStream classFileStream = new FileOutputStream(new File(directory, className + ".class"));
+            classFileStream.write(bytes);
+            classFileStream.close();
+        } catch (IOException e) {//the class is still loaded from memory
+        }
+        System.out.println("Generated: " + className + ".class");
+    }
+
+    public void run(String mainClassName) {
+        ClassLoader loader = new ByteArrayClassLoader(classes, InProcessRunner.class.getClassLoader());
+        try {
+            Class<?> mainClass = loader.loadClass(mainClassName);
+            Method mainMethod = mainClass.getMethod("main", String[].class);
+            mainMethod.invoke(null, (Object) new String[0]);
+        } catch (InvocationTargetException e) {
+            e.getCause().printStackTrace();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            e.printStackTrace();
+        }
+        System.out.flush();
+    }
+}
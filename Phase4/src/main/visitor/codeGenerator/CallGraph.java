@@ -0,0 +1,202 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.statement.*;
+import main.symbolTable.items.FunctionSymbolTableItem;
+import main.visitor.Visitor;
+
+import java.util.*;
+
+//direct calls between functions, the strongly connected components they form, which functions are pure
+//and which of those always return
+public class CallGraph extends Visitor<Void> {
+    private final CalleeResolver calleeResolver;
+    private final Map<String, Set<String>> calls = new LinkedHashMap<>();
+    private Set<String> curCalls;
+    //prints or calls through a function value
+    private boolean curEffects;
+    //divides or indexes a list, either of which can throw
+    private boolean curPartial;
+    private final Set<String> pure = new HashSet<>();
+    private final Set<String> partial = new HashSet<>();
+    private final Set<String> total = new HashSet<>();
+
+    private final Map<String, Integer> index = new HashMap<>();
+    private final Map<String, Integer> lowLink = new HashMap<>();
+    private final Deque<String> stack = new ArrayDeque<>();
+    private final Set<String> onStack = new HashSet<>();
+    private final ArrayList<ArrayList<String>> components = new ArrayList<>();
+
+    public CallGraph(CalleeResolver calleeResolver, Set<String> functions) {
+        this.calleeResolver = calleeResolver;
+        for (String name : functions) {
+            FunctionSymbolTableItem func = CalleeResolver.findFunction(name);
+            curCalls = new LinkedHashSet<>();
+            curEffects = false;
+            curPartial = false;
+            func.getFuncDeclaration().getBody().accept(this);
+            if (!curEffects && functions.containsAll(curCalls))
+                pure.add(name);
+            if (curPartial)
+                partial.add(name);
+            curCalls.retainAll(functions);
+            calls.put(name, curCalls);
+        }
+        for (String name : calls.keySet())
+            if (!index.containsKey(name))
+                strongConnect(name);
+        //callees come first, so a component only depends on components already decided
+        for (ArrayList<String> component : components) {
+            boolean componentPure = pure.containsAll(component);
+            for (String member : component)
+                for (String callee : calls.get(member))
+                    componentPure &= pure.contains(callee) || component.contains(callee);
+            if (!componentPure)
+                pure.removeAll(component);
+            //a recursive call may never return
+            String member = component.get(0);
+            if (pure.contains(member) && !partial.contains(member) && !isRecursive(member) && total.containsAll(calls.get(member)))
+                total.add(member);
+        }
+    }
+
+    //no prints on any path, and every call goes to a known pure function
+    public boolean isPure(String function) {
+        return pure.contains(function);
+    }
+
+    //pure, and every call of it returns a value instead of throwing or running forever
+    public boolean isTotal(String function) {
+        return total.contains(function);
+    }
+
+    public boolean isRecursive(String function) {
+        for (ArrayList<String> component : components)
+            if (component.contains(function))
+                return component.size() > 1 || calls.get(function).contains(function);
+        return false;
+    }
+
+    public Set<String> getCalls(String function) {
+        return calls.get(function);
+    }
+
+    //components in reverse topological order, callees before callers
+    public ArrayList<ArrayList<String>> getComponents() {
+        return components;
+    }
+
+    private void strongConnect(String name) {
+        index.put(name, index.size());
+        lowLink.put(name, index.get(name));
+        stack.push(name);
+        onStack.add(name);
+        for (String callee : calls.get(name)) {
+            if (!index.containsKey(callee)) {
+                strongConnect(callee);
+                lowLink.put(name, Math.min(lowLink.get(name), lowLink.get(callee)));
+            }
+            else if (onStack.contains(callee))
+                lowLink.put(name, Math.min(lowLink.get(name), index.get(callee)));
+        }
+        if (lowLink.get(name).equals(index.get(name))) {
+            ArrayList<String> component = new ArrayList<>();
+            String member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                component.add(member);
+            } while (!member.equals(name));
+            Collections.reverse(component);
+            components.add(component);
+        }
+    }
+
+    @Override
+    public Void visit(BlockStmt blockStmt) {
+        for (Statement stmt : blockStmt.getStatements())
+            stmt.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.getCondition().accept(this);
+        conditionalStmt.getThenBody().accept(this);
+        if (conditionalStmt.getElseBody() != null)
+            conditionalStmt.getElseBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionCallStmt funcCallStmt) {
+        funcCallStmt.getFunctionCall().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrintStmt print) {
+        curEffects = true;
+        print.getArg().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStmt returnStmt) {
+        returnStmt.getReturnedExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryExpression binaryExpression) {
+        if (binaryExpression.getBinaryOperator() == BinaryOperator.div)
+            curPartial = true;
+        binaryExpression.getFirstOperand().accept(this);
+        binaryExpression.getSecondOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryExpression unaryExpression) {
+        unaryExpression.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListAccessByIndex listAccessByIndex) {
+        curPartial = true;
+        listAccessByIndex.getInstance().accept(this);
+        listAccessByIndex.getIndex().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListSize listSize) {
+        listSize.getInstance().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListValue listValue) {
+        for (Expression element : listValue.getElements())
+            element.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionCall funcCall) {
+        String callee = calleeResolver.resolve(funcCall.getInstance());
+        if (callee != null)
+            curCalls.add(callee);
+        else
+            curEffects = true;
+        funcCall.getInstance().accept(this);
+        for (Expression arg : funcCall.getArgs())
+            arg.accept(this);
+        for (Expression arg : funcCall.getArgsWithKey().values())
+            arg.accept(this);
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.statement.*;
+import main.symbolTable.SymbolTable;
+import main.symbolTable.exceptions.ItemNotFoundException;
+import main.symbolTable.items.FunctionSymbolTableItem;
+import main.visitor.Visitor;
+
+import java.util.*;
+
+//finds the function a callee expression always refers to, null if it is only known at runtime
+public class CalleeResolver extends Visitor<String> {
+    private final Map<String, String> returnedFunctions = new HashMap<>();
+    private final Set<String> inProgress = new HashSet<>();
+    private ArrayList<Expression> returnedExprs;
+
+    public String resolve(Expression callee) {
+        return callee.accept(this);
+    }
+
+    public static FunctionSymbolTableItem findFunction(String name) {
+        try {
+            return (FunctionSymbolTableItem) SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + name);
+        }catch (ItemNotFoundException e) {
+            return null;
+        }
+    }
+
+    private String returnedFunction(String functionName) {
+        if (returnedFunctions.containsKey(functionName))
+            return returnedFunctions.get(functionName);
+        if (inProgress.contains(functionName))
+            return null;
+        inProgress.add(functionName);
+
+        ArrayList<Expression> outerExprs = returnedExprs;
+        returnedExprs = new ArrayList<>();
+        FunctionDeclaration funcDeclaration = findFunction(functionName).getFuncDeclaration();
+        funcDeclaration.getBody().accept(this);
+        ArrayList<Expression> exprs = returnedExprs;
+        returnedExprs = outerExprs;
+
+        String result = null;
+        for (Expression expr : exprs) {
+            String name = expr.accept(this);
+            if (name == null || (result != null && !result.equals(name))) {
+                result = null;
+                break;
+            }
+            result = name;
+        }
+        inProgress.remove(functionName);
+        returnedFunctions.put(functionName, result);
+        return result;
+    }
+
+    @Override
+    public String visit(BlockStmt blockStmt) {
+        for (Statement stmt : blockStmt.getStatements())
+            stmt.accept(this);
+        return null;
+    }
+
+    @Override
+    public String visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.getThenBody().accept(this);
+        if (conditionalStmt.getElseBody() != null)
+            conditionalStmt.getElseBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public String visit(ReturnStmt returnStmt) {
+        returnedExprs.add(returnStmt.getReturnedExpr());
+        return null;
+    }
+
+    @Override
+    public String visit(Identifier identifier) {
+        if (findFunction(identifier.getName()) != null)
+            return identifier.getName();
+        return null;
+    }
+
+    @Override
+    public String visit(AnonymousFunction anonymousFunction) {
+        return anonymousFunction.getName();
+    }
+
+    @Override
+    public String visit(FunctionCall funcCall) {
+        String called = funcCall.getInstance().accept(this);
+        if (called == null)
+            return null;
+        return returnedFunction(called);
+    }
+}
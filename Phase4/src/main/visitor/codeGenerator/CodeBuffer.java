@@ -0,0 +1,76 @@
+package main.visitor.codeGenerator;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CodeBuffer {
+    private Instruction[] instructions;
+    private int size;
+
+    public CodeBuffer() {
+        instructions = new Instruction[64];
+        size = 0;
+    }
+
+    public void add(Instruction instruction) {
+        if (size == instructions.length)
+            instructions = Arrays.copyOf(instructions, size * 2);
+        instructions[size++] = instruction;
+    }
+
+    public void add(String opcode) {
+        add(new Instruction(opcode, null));
+    }
+
+    public void add(String opcode, String operand) {
+        add(new Instruction(opcode, operand));
+    }
+
+    public void add(String opcode, int operand) {
+        add(new Instruction(opcode, String.valueOf(operand)));
+    }
+
+    public void addTableswitch(int low, List<String> targets, String defaultTarget) {
+        StringBuilder operand = new StringBuilder();
+        operand.append(low).append(' ').append(low + targets.size() - 1);
+        for (String target : targets)
+            operand.append(' ').append(target);
+        operand.append(' ').append(defaultTarget);
+        add("tableswitch", operand.toString());
+    }
+
+    public void addLabel(String label) {
+        add(Instruction.label(label));
+    }
+
+    //puts an instruction before the one at index
+    public void insert(int index, Instruction instruction) {
+        if (size == instructions.length)
+            instructions = Arrays.copyOf(instructions, size * 2);
+        System.arraycopy(instructions, index, instructions, index + 1, size - index);
+        instructions[index] = instruction;
+        size++;
+    }
+
+    public Instruction get(int index) {
+        return instructions[index];
+    }
+
+    public void set(int index, Instruction instruction) {
+        instructions[index] = instruction;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(StringBuilder text) {
+        for (int i = 0; i < size; i++) {
+            if (instructions[i].isLabel())
+                text.append('\t');
+            else
+                text.append("\t\t");
+            text.append(instructions[i]).append('\n');
+        }
+    }
+}
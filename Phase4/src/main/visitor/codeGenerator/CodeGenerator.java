@@ -12,35 +12,124 @@ import main.ast.types.*;
 import main.ast.types.functionPointer.*;
 import main.ast.types.list.*;
 import main.ast.types.single.*;
+import main.ir.*;
+import main.ir.pass.BoxElimination;
+import main.ir.pass.BranchFolding;
+import main.ir.pass.DeadStores;
+import main.ir.pass.IrPass;
+import main.ir.pass.UnreachableBlocks;
 import main.symbolTable.SymbolTable;
 import main.symbolTable.exceptions.ItemNotFoundException;
 import main.symbolTable.items.FunctionSymbolTableItem;
 import main.visitor.Visitor;
+import main.visitor.codeGenerator.backend.Backend;
 import main.visitor.type.ExpressionTypeChecker;
 
 import java.io.*;
 import java.util.*;
 
-public class CodeGenerator extends Visitor<String> {
+//lowers the checked program into one IR function per method, which the backend selects instructions for
+//expressions return the value they compute, int and bool typed values are unboxed
+public class CodeGenerator extends Visitor<IrValue> {
     private final String outputPath;
-    private FileWriter mainFile;
+    private final Backend backend;
     private final ExpressionTypeChecker expressionTypeChecker;
     private FunctionDeclaration curFuncDec;
+    private FunctionSymbolTableItem curFuncSymbolTable;
+    private IrBuilder builder;
+    private final CalleeResolver calleeResolver;
     private Set<String> visited;
+    private final Set<String> bridged = new LinkedHashSet<>();
+    private IrBlock methodStart;
+    private boolean trampoline = false;
+    //mutually recursive functions share a component, tail calls inside it bounce through trampoline$<index>
+    private final ArrayList<ArrayList<String>> trampolineComponents = new ArrayList<>();
+    private final Map<String, ArrayList<String>> trampolined = new HashMap<>();
+    private boolean inStepMethod = false;
+    private boolean defunctionalize = false;
+    //function values are Integer tags, dynamic calls go through dispatch$<arity>
+    private final Map<String, Integer> functionTags = new LinkedHashMap<>();
+    private final Set<Integer> dispatchArities = new TreeSet<>();
+    private boolean memoize = false;
+    //pure recursive functions whose results are cached in memo$<name>, the body itself is <name>$compute
+    private final Set<String> memoized = new LinkedHashSet<>();
+    private boolean parallel = false;
+    private CostEstimator costEstimator;
+    //argument types each parallel$<id> method is called with, empty for tasks forked in main
+    private final ArrayList<ArrayList<Type>> taskArgTypes = new ArrayList<>();
+    private boolean inMain = false;
+    private boolean eliminateCommonSubexpressions = false;
+    //the current function's shared sub-expressions, null when they are evaluated every time
+    private CommonSubexpressions cse;
+    private final Map<Expression, IrVariable> cseTemps = new IdentityHashMap<>();
+    private final Set<Expression> cseDefining = Collections.newSetFromMap(new IdentityHashMap<>());
+    //rewrites every function goes through before the backend gets it, in order
+    private final ArrayList<IrPass> irPasses = new ArrayList<>(Arrays.asList(new BranchFolding(), new UnreachableBlocks(), new BoxElimination(), new DeadStores()));
+    //the functions as the backend got them, null when they are not dumped
+    private StringBuilder irDump;
+    private boolean hoistConstants = false;
+    //static fields holding one Fptr per referenced method and one list per constant literal, the lists are built in <clinit>
+    private final Set<String> hoistedFunctions = new LinkedHashSet<>();
+    private final IrBuilder classInitBuilder = new IrBuilder(new IrFunction("Main", "static", "<clinit>", "()V"));
+    private int hoistedLists = 0;
     int label_cnt;
 
-    public CodeGenerator(ExpressionTypeChecker expressionTypeChecker , Set<String> visited) {
+    public CodeGenerator(ExpressionTypeChecker expressionTypeChecker , Set<String> visited, Backend backend) {
         this.expressionTypeChecker = expressionTypeChecker;
         this.visited = visited;
+        this.backend = backend;
+        this.calleeResolver = new CalleeResolver();
         outputPath = "./output/";
         label_cnt = 0;
-        prepareOutputFolder();
+    }
+
+    public void setTrampoline(boolean trampoline) {
+        this.trampoline = trampoline;
+    }
+
+    public void setDefunctionalize(boolean defunctionalize) {
+        this.defunctionalize = defunctionalize;
+    }
+
+    public void setMemoize(boolean memoize) {
+        this.memoize = memoize;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    public void setEliminateCommonSubexpressions(boolean eliminateCommonSubexpressions) {
+        this.eliminateCommonSubexpressions = eliminateCommonSubexpressions;
+    }
+
+    public void setHoistConstants(boolean hoistConstants) {
+        this.hoistConstants = hoistConstants;
+    }
+
+    //writes every function's IR to Main.ir next to the class
+    public void setDumpIr(boolean dumpIr) {
+        irDump = dumpIr ? new StringBuilder() : null;
+    }
+
+    //a function like the current one, for code that is split off from it
+    private IrFunction siblingFunction(String name, String descriptor) {
+        IrFunction function = builder.getFunction();
+        List<String> parameter_names = new ArrayList<>();
+        for(IrVariable parameter : function.getParameters())
+            parameter_names.add(parameter.getName());
+        return new IrFunction(function.getClassName(), function.getAccessFlags(), name, descriptor, parameter_names);
     }
 
     private void prepareOutputFolder() {
         String jasminPath = "utilities/jarFiles/jasmin.jar";
         String listClassPath = "utilities/codeGenerationUtilityClasses/List.j";
+        String intListClassPath = "utilities/codeGenerationUtilityClasses/IntList.j";
+        String boolListClassPath = "utilities/codeGenerationUtilityClasses/BoolList.j";
         String fptrClassPath = "utilities/codeGenerationUtilityClasses/Fptr.j";
+        String memoClassPath = "utilities/codeGenerationUtilityClasses/Memo.j";
+        String taskClassPath = "utilities/codeGenerationUtilityClasses/Task.j";
+        String parallelClassPath = "utilities/codeGenerationUtilityClasses/Parallel.j";
         try{
             File directory = new File(this.outputPath);
             File[] files = directory.listFiles();
@@ -53,14 +142,15 @@ public class CodeGenerator extends Visitor<String> {
         }
         copyFile(jasminPath, this.outputPath + "jasmin.jar");
         copyFile(listClassPath, this.outputPath + "List.j");
-        copyFile(fptrClassPath, this.outputPath + "Fptr.j");
-
-        try {
-            String path = outputPath + "Main.j";
-            File file = new File(path);
-            file.createNewFile();
-            mainFile = new FileWriter(path);
-        } catch (IOException e) {//unreachable
+        copyFile(intListClassPath, this.outputPath + "IntList.j");
+        copyFile(boolListClassPath, this.outputPath + "BoolList.j");
+        if(!defunctionalize)
+            copyFile(fptrClassPath, this.outputPath + "Fptr.j");
+        if(memoize)
+            copyFile(memoClassPath, this.outputPath + "Memo.j");
+        if(parallel){
+            copyFile(taskClassPath, this.outputPath + "Task.j");
+            copyFile(parallelClassPath, this.outputPath + "Parallel.j");
         }
     }
 
@@ -80,59 +170,215 @@ public class CodeGenerator extends Visitor<String> {
         }
     }
 
-    private void addCommand(String command) {
+    private void writeIrDump() {
         try {
-            command = String.join("\n\t\t", command.split("\n"));
-            if(command.startsWith("Label_"))
-                mainFile.write("\t" + command + "\n");
-            else if(command.startsWith("."))
-                mainFile.write(command + "\n");
-            else
-                mainFile.write("\t\t" + command + "\n");
-            mainFile.flush();
+            Writer irFile = new BufferedWriter(new FileWriter(this.outputPath + "Main.ir"));
+            irFile.write(irDump.toString());
+            irFile.close();
         } catch (IOException e) {//unreachable
-
         }
     }
 
+    private String newLabel(String name) {
+        String label = "Label_" + name + label_cnt;
+        label_cnt += 1;
+        return label;
+    }
+
+    //starts lowering a method, its parameters are named after the current function's arguments
+    private IrFunction newFunction(String access_flags, String name, String descriptor, ArrayList<Identifier> args) {
+        List<String> parameter_names = new ArrayList<>();
+        if(args != null)
+            for(Identifier arg : args)
+                parameter_names.add(arg.getName());
+        IrFunction function = new IrFunction("Main", access_flags, name, descriptor, parameter_names);
+        builder = new IrBuilder(function);
+        return function;
+    }
+
+    private void addMethod(IrFunction function) {
+        for(IrPass ir_pass : irPasses)
+            ir_pass.run(function);
+        if(irDump != null)
+            irDump.append(IrPrinter.print(function)).append('\n');
+        backend.addMethod(function);
+    }
+
     private void addStaticMainMethod() {
-        //todo
-        String command = ".method public static main([Ljava/lang/String;)V\n";
-        command += ".limit stack 128\n";
-        command += ".limit locals 128\n";
-        command += "new Main\n";
-        command += "invokespecial Main/<init>()V\n";
-        command += "return\n";
-        command += ".end method\n";
-        addCommand(command);
+        IrFunction function = newFunction("public static", "main", "([Ljava/lang/String;)V", null);
+        builder.init(builder.newObject("Main"), "()V");
+        builder.ret(null);
+        addMethod(function);
+    }
+
+    private IrVariable parameter(String identifier) {
+        return builder.getFunction().getParameter(identifier);
+    }
+
+    private String typeDescriptor(Type type) {
+        if(type instanceof IntType)
+            return "Ljava/lang/Integer;";
+        else if(type instanceof BoolType)
+            return "Ljava/lang/Boolean;";
+        else if(type instanceof StringType)
+            return "Ljava/lang/String;";
+        else if(type instanceof FptrType)
+            return "L" + functionValueClass() + ";";
+        else if(type instanceof ListType)
+            return "LList;";
+        return "Ljava/lang/Object;";
     }
 
-    private int slotOf(String identifier) {
-        //todo
-        if (identifier == "") {
-            curFuncDec.increaseUsedTemps();
-            return curFuncDec.getArgs().size() + curFuncDec.getUsedTemps();
+    private String functionValueClass() {
+        return defunctionalize ? "java/lang/Integer" : "Fptr";
+    }
+
+    private int functionTag(String func_name) {
+        Integer tag = functionTags.get(func_name);
+        if(tag == null){
+            tag = functionTags.size();
+            functionTags.put(func_name, tag);
+        }
+        return tag;
+    }
+
+    private String primitiveDescriptor(Type type) {
+        if(type instanceof IntType)
+            return "I";
+        else if(type instanceof BoolType)
+            return "Z";
+        return typeDescriptor(type);
+    }
+
+    private boolean isPrimitive(Type type) {
+        return type instanceof IntType || type instanceof BoolType;
+    }
+
+    private IrType irType(Type type) {
+        return IrType.of(primitiveDescriptor(type));
+    }
+
+    //records the source type on the value, the first type given sticks
+    private IrValue typed(IrValue value, Type type) {
+        if(value.getSourceType() == null && type != null)
+            value.setSourceType(type);
+        return value;
+    }
+
+    private IrValue box(IrValue value) {
+        if(value.getType().isReference())
+            return value;
+        return builder.box(value);
+    }
+
+    private IrValue primitiveExpression(Expression expression, Type type) {
+        IrValue value = evaluate(expression);
+        if(value.getType().isReference())
+            value = builder.unbox(value, irType(type));
+        return typed(value, type);
+    }
+
+    private IrValue boxedExpression(Expression expression) {
+        return box(evaluate(expression));
+    }
+
+    //a shared sub-expression is computed once into a temp, its later occurrences load the temp
+    private IrValue evaluate(Expression expression) {
+        if(cse == null || !cse.isShared(expression))
+            return expression.accept(this);
+        Type type = cse.getType(expression);
+        if(cse.isStored(expression)){
+            cseDefining.add(expression);
+            IrValue value = expression.accept(this);
+            cseDefining.remove(expression);
+            if(value.getType().isReference())
+                value = builder.unbox(value, irType(type));
+            IrVariable temp = builder.getFunction().newTemp(irType(type));
+            builder.store(temp, value);
+            cseTemps.put(expression, temp);
+            return typed(value, type);
         }
-        for(int i = 0; i < curFuncDec.getArgs().size(); i++){
-            if (curFuncDec.getArgs().get(i).getName().equals(identifier))
-                return i+1;
+        return typed(builder.load(cseTemps.get(cse.getDefinition(expression))), type);
+    }
+
+    //functions take and return int and bool unboxed, the boxed form is only used by the Fptr bridge
+    private String methodDescriptor(FunctionSymbolTableItem func_symbol_table, boolean boxed) {
+        StringBuilder descriptor = new StringBuilder("(");
+        //argument types
+        Map < String , Type > func_args_type = func_symbol_table.getArgTypes();
+        for(Identifier cur_arg : func_symbol_table.getFuncDeclaration().getArgs()){
+            Type cur_arg_type = func_args_type.get(cur_arg.getName());
+            descriptor.append(boxed ? typeDescriptor(cur_arg_type) : primitiveDescriptor(cur_arg_type));
         }
-        return -1;
+        descriptor.append(")");
+
+        //return type
+        Type return_type = func_symbol_table.getReturnType();
+        if(return_type instanceof VoidType)
+            descriptor.append("V");
+        else
+            descriptor.append(boxed ? typeDescriptor(return_type) : primitiveDescriptor(return_type));
+        return descriptor.toString();
     }
 
-    @Override
-    public String visit(Program program) {
-        //todo
-        String command = "";
+    private boolean needsBridge(FunctionSymbolTableItem func_symbol_table) {
+        return !methodDescriptor(func_symbol_table, true).equals(methodDescriptor(func_symbol_table, false));
+    }
 
-        command += ".class public Main\n";
-        command += ".super java/lang/Object\n";
+    private void addBridgeMethod(String func_name) {
+        FunctionSymbolTableItem func_symbol_table = CalleeResolver.findFunction(func_name);
+        Map<String, Type> func_args_type = func_symbol_table.getArgTypes();
+        ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+
+        IrFunction function = newFunction("public", func_name + "$boxed", methodDescriptor(func_symbol_table, true), func_args);
+        ArrayList<IrValue> call_args = new ArrayList<>();
+        call_args.add(builder.self());
+        for(int i = 0; i < func_args.size(); i++){
+            IrValue arg = builder.load(function.getParameter(i));
+            Type arg_type = func_args_type.get(func_args.get(i).getName());
+            call_args.add(isPrimitive(arg_type) ? builder.unbox(arg, irType(arg_type)) : arg);
+        }
+        IrValue result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", func_name, methodDescriptor(func_symbol_table, false), call_args);
+        builder.ret(result == null ? null : box(result));
+        addMethod(function);
+    }
 
-        addCommand(command);
+    @Override
+    public IrValue visit(Program program) {
+        prepareOutputFolder();
+        backend.beginClass("Main", "java/lang/Object");
+        if(parallel)
+            backend.addInterface("Parallel");
 
         addStaticMainMethod();
 
-        //ToDo visiting functions
+        //forked operands are compiled into task methods, which do not share the temps of the function they come from
+        if(parallel)
+            eliminateCommonSubexpressions = false;
+        CallGraph call_graph = null;
+        if(trampoline || memoize || parallel || eliminateCommonSubexpressions)
+            call_graph = new CallGraph(calleeResolver, visited);
+        if(parallel || eliminateCommonSubexpressions)
+            costEstimator = new CostEstimator(calleeResolver, call_graph);
+        if(trampoline){
+            for(ArrayList<String> component : call_graph.getComponents()){
+                if(component.size() < 2)
+                    continue;
+                trampolineComponents.add(component);
+                for(String func_name : component)
+                    trampolined.put(func_name, component);
+            }
+        }
+        if(memoize){
+            for(String func_name : visited){
+                if(!trampolined.containsKey(func_name) && call_graph.isPure(func_name) && call_graph.isRecursive(func_name) && hasMemoKey(CalleeResolver.findFunction(func_name))){
+                    memoized.add(func_name);
+                    backend.addField("public", "memo$" + func_name, "LMemo;");
+                }
+            }
+        }
+
+        //the functions reached from main, each once
         for(String func_name : visited){
             FunctionSymbolTableItem func_symbol_table;
             try {
@@ -143,6 +389,7 @@ public class CodeGenerator extends Visitor<String> {
             FunctionDeclaration cur_func_dec_vis = func_symbol_table.getFuncDeclaration();
 
             curFuncDec = cur_func_dec_vis;
+            curFuncSymbolTable = func_symbol_table;
             expressionTypeChecker.setCurFunction(func_symbol_table);
 
             cur_func_dec_vis.accept(this);
@@ -150,567 +397,882 @@ public class CodeGenerator extends Visitor<String> {
 
         program.getMain().accept(this);
 
+        for(String func_name : bridged)
+            addBridgeMethod(func_name);
+        for(int i = 0; i < trampolineComponents.size(); i++)
+            addTrampolineMethod(i);
+        for(int arity : dispatchArities)
+            addDispatchMethod(arity);
+        if(parallel)
+            addRunTaskMethod();
+        if(hoistedLists > 0){
+            classInitBuilder.ret(null);
+            addMethod(classInitBuilder.getFunction());
+        }
+
+        backend.endClass();
+        if(irDump != null)
+            writeIrDump();
         return null;
     }
 
     @Override
-        public String visit(FunctionDeclaration funcDeclaration) {
-        //todo
-        String command = "";
+        public IrValue visit(FunctionDeclaration funcDeclaration) {
         FunctionSymbolTableItem func_symbol_table;
         try {
             func_symbol_table = (FunctionSymbolTableItem) (SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + funcDeclaration.getFunctionName().getName()));
         }catch(ItemNotFoundException e){
             func_symbol_table = null;
         }
+        String descriptor = methodDescriptor(func_symbol_table, false);
+        String func_name = funcDeclaration.getFunctionName().getName();
+        if(trampolined.containsKey(func_name)){
+            addTrampolineEntryMethod(func_symbol_table);
+            inStepMethod = true;
+            descriptor = stepDescriptor(func_symbol_table);
+            func_name = func_name + "$step";
+        }
+        else if(memoized.contains(func_name)){
+            addMemoMethod(func_symbol_table);
+            func_name = func_name + "$compute";
+        }
 
-        command += ".method public " + funcDeclaration.getFunctionName().getName() + "(";
-        //Todo add arg types
-        ArrayList<Identifier> func_args = funcDeclaration.getArgs();
-        Map < String , Type > func_args_type = func_symbol_table.getArgTypes();
-
-        for(Identifier cur_arg : func_args){
-            Type cur_arg_type = func_args_type.get(cur_arg.getName());
-            if(cur_arg_type instanceof IntType)
-                command += "Ljava/lang/Integer;";
-            else if(cur_arg_type instanceof BoolType)
-                command += "Ljava/lang/Boolean;";
-            else if(cur_arg_type instanceof StringType)
-                command += "Ljava/lang/String;";
-            else if(cur_arg_type instanceof FptrType)
-                command += "LFptr;";
-            else if(cur_arg_type instanceof ListType)
-                command += "LList;";
-        }
-        command += ")";
-
-        //Todo add return type \n
-        Type return_type = func_symbol_table.getReturnType();
-        if(return_type instanceof IntType)
-            command += "Ljava/lang/Integer;";
-        else if(return_type instanceof BoolType)
-            command += "Ljava/lang/Boolean;";
-        else if(return_type instanceof StringType)
-            command += "Ljava/lang/String;";
-        else if(return_type instanceof FptrType)
-            command += "LFptr;";
-        else if(return_type instanceof ListType)
-            command += "LList;";
-        else if(return_type instanceof VoidType)
-            command += "V";
-        command += "\n";
         //Body
-        command += ".limit stack 128\n";
-        command += ".limit locals 128\n";
-
-        addCommand(command);
-
-        //TODO Set curFuncDec
+        IrFunction function = newFunction("public", func_name, descriptor, funcDeclaration.getArgs());
+        methodStart = builder.newBlock(newLabel("start"));
+        builder.place(methodStart);
+        if(eliminateCommonSubexpressions){
+            cse = new CommonSubexpressions(expressionTypeChecker, costEstimator);
+            cse.analyse(funcDeclaration.getBody());
+        }
         funcDeclaration.getBody().accept(this);
+        cse = null;
+        methodStart = null;
+        inStepMethod = false;
 
-        command = ".end method\n";
-        addCommand(command);
+        addMethod(function);
         return null;
     }
 
     @Override
-    public String visit(MainDeclaration mainDeclaration) {
-        //todo
-        String command = ".method public <init>()V\n";
-        command += ".limit stack 128\n";
-        command += ".limit locals 128\n";
-        command += "aload_0\n";
-        command += "invokespecial java/lang/Object/<init>()V\n";
-        addCommand(command);
-
+    public IrValue visit(MainDeclaration mainDeclaration) {
+        IrFunction function = newFunction("public", "<init>", "()V", null);
+        IrBlock prologue = builder.getBlock();
+        inMain = true;
         mainDeclaration.getBody().accept(this);
+        inMain = false;
 
-        command = "return\n";
-        command += ".end method\n";
-        addCommand(command);
+        for(String func_name : memoized){
+            IrValue memo = builder.getField(builder.self(), "Main", "memo$" + func_name, "LMemo;");
+            builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Memo", "report", "()V", memo);
+        }
+        builder.ret(null);
+
+        //the body is lowered first, so the hoisted function references it makes are known here
+        builder.positionAt(prologue, 0);
+        builder.invoke(IrOpcode.INVOKE_SPECIAL, "java/lang/Object", "<init>", "()V", builder.self());
+        for(String func_name : memoized){
+            IrValue memo = builder.newObject("Memo");
+            builder.init(memo, "(Ljava/lang/String;)V", IrConstant.of(func_name));
+            builder.putField(builder.self(), "Main", "memo$" + func_name, "LMemo;", memo);
+        }
+        //an Fptr holds the instance, so these are set here rather than in <clinit>
+        for(String method_name : hoistedFunctions)
+            builder.putStatic("Main", "fptr$" + method_name, "LFptr;", newFptr(method_name));
+        addMethod(function);
 
         return null;
     }
 
 
     @Override
-    public String visit(BlockStmt blockStmt) {
-        //todo
-        for (Statement stmt : blockStmt.getStatements())
+    public IrValue visit(BlockStmt blockStmt) {
+        ArrayList<Statement> stmts = blockStmt.getStatements();
+        for (int i = 0; i < stmts.size(); i++) {
+            Statement stmt = stmts.get(i);
+            //a call statement right before return void is a tail call too
+            if (stmt instanceof FunctionCallStmt && i + 1 < stmts.size() && isVoidReturn(stmts.get(i + 1))) {
+                FunctionCall funcCall = ((FunctionCallStmt) stmt).getFunctionCall();
+                if (isSelfCall(funcCall) || isTrampolinedCall(funcCall)) {
+                    expressionTypeChecker.setFunctioncallStmt(true);
+                    if (isSelfCall(funcCall))
+                        selfTailCall(funcCall);
+                    else
+                        bounce(funcCall);
+                    expressionTypeChecker.setFunctioncallStmt(false);
+                    i++;
+                    continue;
+                }
+            }
             stmt.accept(this);
+        }
         return null;
     }
 
-    @Override
-    public String visit(ConditionalStmt conditionalStmt) {
-        //todo
-        String command = "";
+    private String stepDescriptor(FunctionSymbolTableItem func_symbol_table) {
+        String descriptor = methodDescriptor(func_symbol_table, false);
+        return descriptor.substring(0, descriptor.indexOf(')') + 1) + "Ljava/lang/Object;";
+    }
 
-        if(conditionalStmt.getElseBody() != null) {
-            command += conditionalStmt.getCondition().accept(this);
-            command += "invokevirtual java/lang/Boolean/booleanValue()Z\n";
-            command += "ifeq Label_" + "else" + String.valueOf(label_cnt) + "\n";
-            String label_else = "Label_else" + String.valueOf(label_cnt);
-            label_cnt += 1;
+    private IrValue castFromObject(IrValue value, Type type) {
+        if(type instanceof IntType)
+            return typed(builder.unbox(builder.cast(value, "java/lang/Integer"), IrType.INT), type);
+        else if(type instanceof BoolType)
+            return typed(builder.unbox(builder.cast(value, "java/lang/Boolean"), IrType.BOOL), type);
+        else if(type instanceof StringType)
+            return typed(builder.cast(value, "java/lang/String"), type);
+        else if(type instanceof ListType)
+            return typed(builder.cast(value, "List"), type);
+        else if(type instanceof FptrType)
+            return typed(builder.cast(value, functionValueClass()), type);
+        return value;
+    }
+
+    //memo keys pack the arguments into one long, an int takes 32 bits and a bool 1
+    private boolean hasMemoKey(FunctionSymbolTableItem func_symbol_table) {
+        if(func_symbol_table.getReturnType() instanceof VoidType || func_symbol_table.getArgTypes().isEmpty())
+            return false;
+        int bits = 0;
+        for(Type arg_type : func_symbol_table.getArgTypes().values()){
+            if(arg_type instanceof IntType)
+                bits += 32;
+            else if(arg_type instanceof BoolType)
+                bits += 1;
+            else
+                return false;
+        }
+        return bits <= 64;
+    }
 
-            addCommand(command);
+    private IrValue memoKey(FunctionSymbolTableItem func_symbol_table) {
+        Map<String, Type> func_args_type = func_symbol_table.getArgTypes();
+        ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+        IrValue key = IrConstant.of(0L);
+        for(int i = 0; i < func_args.size(); i++){
+            boolean is_int = func_args_type.get(func_args.get(i).getName()) instanceof IntType;
+            key = builder.binary(IrOpcode.SHL, key, IrConstant.of(is_int ? 32 : 1));
+            IrValue arg = builder.widen(builder.load(builder.getFunction().getParameter(i)));
+            if(is_int){
+                //zero extend so a negative int does not spill into the other arguments
+                arg = builder.binary(IrOpcode.SHL, arg, IrConstant.of(32));
+                arg = builder.binary(IrOpcode.USHR, arg, IrConstant.of(32));
+            }
+            key = builder.binary(IrOpcode.OR, key, arg);
+        }
+        return key;
+    }
+
+    //answers from memo$<name> when the arguments were seen before, otherwise runs <name>$compute and records the result
+    private void addMemoMethod(FunctionSymbolTableItem func_symbol_table) {
+        String func_name = func_symbol_table.getFuncDeclaration().getFunctionName().getName();
+        ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+        Type return_type = func_symbol_table.getReturnType();
+        String descriptor = methodDescriptor(func_symbol_table, false);
+
+        IrFunction function = newFunction("public", func_name, descriptor, func_args);
+        IrBlock miss = builder.newBlock(newLabel("miss"));
+        IrValue memo = builder.getField(builder.self(), "Main", "memo$" + func_name, "LMemo;");
+        IrValue cached = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Memo", "get", "(J)Ljava/lang/Object;", memo, memoKey(func_symbol_table));
+        builder.branch(IrCondition.NULL, miss, cached);
+        builder.ret(castFromObject(cached, return_type));
+
+        builder.place(miss);
+        ArrayList<IrValue> call_args = new ArrayList<>();
+        call_args.add(builder.self());
+        for(IrVariable parameter : function.getParameters())
+            call_args.add(builder.load(parameter));
+        IrValue result = box(builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", func_name + "$compute", descriptor, call_args));
+        memo = builder.getField(builder.self(), "Main", "memo$" + func_name, "LMemo;");
+        builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Memo", "put", "(JLjava/lang/Object;)V", memo, memoKey(func_symbol_table), result);
+        builder.ret(castFromObject(result, return_type));
+        addMethod(function);
+    }
+
+    //jumps on the int in the first parameter to targets[i] for i from 0, and to the default for any other
+    private void switchOnTag(List<IrBlock> targets, IrBlock default_target) {
+        IrValue tag = builder.load(builder.getFunction().getParameter(0));
+        if(targets.isEmpty())
+            builder.jump(default_target);
+        else
+            builder.switchOn(tag, 0, targets, default_target);
+    }
+
+    private void throwIllegalArgument() {
+        IrValue exception = builder.newObject("java/lang/IllegalArgumentException");
+        builder.init(exception, "()V");
+        builder.raise(exception);
+    }
+
+    //calls the function a tag stands for, tags of functions taking another number of arguments are rejected
+    private void addDispatchMethod(int arity) {
+        StringBuilder descriptor = new StringBuilder("(I");
+        for(int i = 0; i < arity; i++)
+            descriptor.append("Ljava/lang/Object;");
+        descriptor.append(")Ljava/lang/Object;");
+        IrFunction function = newFunction("public", "dispatch$" + arity, descriptor.toString(), null);
+
+        IrBlock reject = builder.newBlock(newLabel("reject"));
+        ArrayList<IrBlock> targets = new ArrayList<>();
+        ArrayList<String> tagged = new ArrayList<>(functionTags.keySet());
+        for(String func_name : tagged){
+            FunctionSymbolTableItem func_symbol_table = CalleeResolver.findFunction(func_name);
+            if(visited.contains(func_name) && func_symbol_table.getFuncDeclaration().getArgs().size() == arity)
+                targets.add(builder.newBlock(newLabel("case")));
+            else
+                targets.add(reject);
+        }
+        switchOnTag(targets, reject);
+
+        for(int tag = 0; tag < tagged.size(); tag++){
+            if(targets.get(tag) == reject)
+                continue;
+            FunctionSymbolTableItem func_symbol_table = CalleeResolver.findFunction(tagged.get(tag));
+            Map<String, Type> func_args_type = func_symbol_table.getArgTypes();
+            ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+            builder.place(targets.get(tag));
+            ArrayList<IrValue> call_args = new ArrayList<>();
+            call_args.add(builder.self());
+            for(int i = 0; i < arity; i++)
+                call_args.add(castFromObject(builder.load(function.getParameter(i + 1)), func_args_type.get(func_args.get(i).getName())));
+            IrValue result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", tagged.get(tag), methodDescriptor(func_symbol_table, false), call_args);
+            builder.ret(result == null ? IrConstant.nullConstant() : box(result));
+        }
+
+        builder.place(reject);
+        throwIllegalArgument();
+        addMethod(function);
+    }
+
+    //runs the step method and then the component's trampoline until a value comes back
+    private void addTrampolineEntryMethod(FunctionSymbolTableItem func_symbol_table) {
+        String func_name = func_symbol_table.getFuncDeclaration().getFunctionName().getName();
+        ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+
+        IrFunction function = newFunction("public", func_name, methodDescriptor(func_symbol_table, false), func_args);
+        ArrayList<IrValue> call_args = new ArrayList<>();
+        call_args.add(builder.self());
+        for(IrVariable parameter : function.getParameters())
+            call_args.add(builder.load(parameter));
+        IrValue step = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", func_name + "$step", stepDescriptor(func_symbol_table), call_args);
+        IrValue result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", "trampoline$" + trampolineComponents.indexOf(trampolined.get(func_name)), "(Ljava/lang/Object;)Ljava/lang/Object;", builder.self(), step);
+
+        Type return_type = func_symbol_table.getReturnType();
+        result = castFromObject(result, return_type);
+        builder.ret(return_type instanceof VoidType ? null : result);
+        addMethod(function);
+    }
+
+    //a pending tail call is an Object[] holding the callee's index in the component and then its arguments
+    private void addTrampolineMethod(int component_index) {
+        ArrayList<String> component = trampolineComponents.get(component_index);
+        IrFunction function = newFunction("public", "trampoline$" + component_index, "(Ljava/lang/Object;)Ljava/lang/Object;", null);
+        IrVariable pending = function.getParameter(0);
+        IrBlock loop = builder.newBlock(newLabel("loop"));
+        IrBlock done = builder.newBlock(newLabel("done"));
+        builder.place(loop);
+        builder.branch(IrCondition.EQ, done, builder.instanceOf(builder.load(pending), "[Ljava/lang/Object;"));
+        IrValue call = builder.cast(builder.load(pending), "[Ljava/lang/Object;");
+        IrValue index = builder.unbox(builder.cast(builder.arrayLoad(call, IrConstant.of(0)), "java/lang/Integer"), IrType.INT);
+
+        for(int i = 0; i < component.size(); i++){
+            FunctionSymbolTableItem func_symbol_table = CalleeResolver.findFunction(component.get(i));
+            Map<String, Type> func_args_type = func_symbol_table.getArgTypes();
+            ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+            IrBlock next = builder.newBlock(newLabel("next"));
+            if(i < component.size() - 1)
+                builder.branch(IrCondition.NE, next, index, IrConstant.of(i));
+            ArrayList<IrValue> call_args = new ArrayList<>();
+            call_args.add(builder.self());
+            for(int j = 0; j < func_args.size(); j++)
+                call_args.add(castFromObject(builder.arrayLoad(call, IrConstant.of(j + 1)), func_args_type.get(func_args.get(j).getName())));
+            builder.store(pending, builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", component.get(i) + "$step", stepDescriptor(func_symbol_table), call_args));
+            builder.jump(loop);
+            if(i < component.size() - 1)
+                builder.place(next);
+        }
+
+        builder.place(done);
+        builder.ret(builder.load(pending));
+        addMethod(function);
+    }
+
+    private boolean isTrampolinedCall(Expression expression) {
+        if (!inStepMethod || !(expression instanceof FunctionCall))
+            return false;
+        String callee = calleeResolver.resolve(((FunctionCall) expression).getInstance());
+        return callee != null && trampolined.get(callee) == trampolined.get(curFuncDec.getFunctionName().getName());
+    }
+
+    //returns the pending call to the trampoline instead of making it
+    private void bounce(FunctionCall funcCall) {
+        if(funcCall.getInstance() instanceof FunctionCall)
+            funcCall.getInstance().accept(this);
+        String callee = calleeResolver.resolve(funcCall.getInstance());
+        ArrayList<Expression> call_args = orderedArgs(funcCall, CalleeResolver.findFunction(callee));
+        IrValue call = builder.newArray(IrType.OBJECT, IrConstant.of(call_args.size() + 1));
+        builder.arrayStore(call, IrConstant.of(0), builder.box(IrConstant.of(trampolined.get(callee).indexOf(callee))));
+        for(int i = 0; i < call_args.size(); i++)
+            builder.arrayStore(call, IrConstant.of(i + 1), boxedExpression(call_args.get(i)));
+        builder.ret(call);
+    }
+
+    private boolean isVoidReturn(Statement stmt) {
+        return stmt instanceof ReturnStmt && ((ReturnStmt) stmt).getReturnedExpr() instanceof VoidValue;
+    }
+
+    private boolean isSelfCall(Expression expression) {
+        if (methodStart == null || !(expression instanceof FunctionCall))
+            return false;
+        String callee = calleeResolver.resolve(((FunctionCall) expression).getInstance());
+        return curFuncDec.getFunctionName().getName().equals(callee);
+    }
+
+    //reassigns the arguments and jumps back to the start of the method instead of calling itself
+    private void selfTailCall(FunctionCall funcCall) {
+        if(funcCall.getInstance() instanceof FunctionCall)
+            funcCall.getInstance().accept(this);
+        Map<String, Type> arg_types = curFuncSymbolTable.getArgTypes();
+        ArrayList<Identifier> func_args = curFuncDec.getArgs();
+        ArrayList<Expression> call_args = orderedArgs(funcCall, curFuncSymbolTable);
+        ArrayList<IrValue> values = new ArrayList<>();
+        for(int i = 0; i < call_args.size(); i++){
+            Type arg_type = arg_types.get(func_args.get(i).getName());
+            if(isPrimitive(arg_type))
+                values.add(primitiveExpression(call_args.get(i), arg_type));
+            else
+                values.add(boxedExpression(call_args.get(i)));
+        }
+        for(int i = call_args.size() - 1; i >= 0; i--)
+            builder.store(builder.getFunction().getParameter(i), values.get(i));
+        builder.jump(methodStart);
+    }
+
+    @Override
+    public IrValue visit(ConditionalStmt conditionalStmt) {
+        if(conditionalStmt.getElseBody() != null) {
+            IrBlock else_block = builder.newBlock(newLabel("else"));
+            branch(conditionalStmt.getCondition(), else_block, false);
 
             conditionalStmt.getThenBody().accept(this);
-            command = "goto Label_" + "endif" + String.valueOf(label_cnt) + "\n";
-            String label_endif = "Label_endif" + String.valueOf(label_cnt);
-            label_cnt += 1;
+            IrBlock endif = builder.newBlock(newLabel("endif"));
+            //a then branch ending in return or a tail call never reaches endif
+            boolean then_falls_through = builder.isOpen();
+            if(then_falls_through)
+                builder.jump(endif);
 
-            //command += "Label_" + "else" + ":\n";
-            command += label_else + ":\n";
-            addCommand(command);
+            builder.place(else_block);
 
             conditionalStmt.getElseBody().accept(this);
-            //command = "Label_" + "endif" + ":\n";
-            command = label_endif + ":\n";
-            addCommand(command);
+            if(then_falls_through || builder.isOpen())
+                builder.place(endif);
         }
         else{
-            command += conditionalStmt.getCondition().accept(this);
-            command += "invokevirtual java/lang/Boolean/booleanValue()Z\n";
-            command += "ifeq Label_" + "endif" + String.valueOf(label_cnt) + "\n";
-            String label_endif = "Label_endif" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            addCommand(command);
+            IrBlock endif = builder.newBlock(newLabel("endif"));
+            branch(conditionalStmt.getCondition(), endif, false);
 
             conditionalStmt.getThenBody().accept(this);
 
-            command = label_endif + ":\n";
-            addCommand(command);
+            builder.place(endif);
         }
         return null;
     }
 
     @Override
-    public String visit(FunctionCallStmt funcCallStmt) {
-        //todo
+    public IrValue visit(FunctionCallStmt funcCallStmt) {
         expressionTypeChecker.setFunctioncallStmt(true);
-        String command = "";
-        command += funcCallStmt.getFunctionCall().accept(this);
-        command += "pop\n";
-        addCommand(command);
+        funcCallStmt.getFunctionCall().accept(this);
         expressionTypeChecker.setFunctioncallStmt(false);
         return null;
     }
 
+    private IrValue out() {
+        return builder.getStatic("java/lang/System", "out", "Ljava/io/PrintStream;");
+    }
+
+    private void print(String method, String descriptor, IrValue value) {
+        IrValue out = out();
+        builder.invoke(IrOpcode.INVOKE_VIRTUAL, "java/io/PrintStream", method, descriptor, out, value);
+    }
+
     @Override
-    public String visit(PrintStmt print) {
-        //todo
-        //Todo add printstream
+    public IrValue visit(PrintStmt print) {
         Type arg_type = print.getArg().accept(expressionTypeChecker);
-        String command = "";
 
-        if(!(arg_type instanceof ListType))
-            command += "getstatic java/lang/System/out Ljava/io/PrintStream;\n";
+        //the value, then the print overload for its type
+        if(arg_type instanceof IntType || arg_type instanceof BoolType){
+            IrValue out = out();
+            IrValue value = primitiveExpression(print.getArg(), arg_type);
+            builder.invoke(IrOpcode.INVOKE_VIRTUAL, "java/io/PrintStream", "println", arg_type instanceof IntType ? "(I)V" : "(Z)V", out, value);
+        }
+        else if(arg_type instanceof StringType){
+            IrValue out = out();
+            IrValue value = print.getArg().accept(this);
+            builder.invoke(IrOpcode.INVOKE_VIRTUAL, "java/io/PrintStream", "println", "(Ljava/lang/String;)V", out, value);
+        }
+        else if(arg_type instanceof ListType){
+            IrValue list = print.getArg().accept(this);
+            print("print", "(Ljava/lang/String;)V", IrConstant.of("["));
 
-        //Todo add value
-        command += print.getArg().accept(this);
+            IrBlock whileend = builder.newBlock(newLabel("whileend"));
+            IrBlock whilestart = builder.newBlock(newLabel("whilestart"));
+            IrBlock aftercomma = builder.newBlock(newLabel("aftercomma"));
 
-        if(arg_type instanceof IntType)
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
+            IrVariable index = builder.getFunction().newTemp(IrType.INT);
+            builder.store(index, IrConstant.of(0));
 
-        //Todo invoke matching print function
+            Type element_type = ((ListType) arg_type).getType();
 
-        if(arg_type instanceof IntType)
-            command += "invokevirtual java/io/PrintStream/println(I)V\n";
-        else if(arg_type instanceof BoolType)
-            command += "invokevirtual java/io/PrintStream/println(Ljava/lang/Object;)V\n";
-        else if(arg_type instanceof StringType)
-            command += "invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V\n";
-        else if(arg_type instanceof ListType){
-            command += "getstatic java/lang/System/out Ljava/io/PrintStream;\n";
-            command += "ldc \"[\"\n";
-            command += "invokevirtual java/io/PrintStream/print(Ljava/lang/String;)V\n";
+            builder.place(whilestart);
+            IrValue size = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getSize", "()I", list);
+            builder.branch(IrCondition.LE, whileend, size, builder.load(index));
 
-            String label_whileend = "Label_whileend" + String.valueOf(label_cnt);
-            label_cnt += 1;
+            builder.branch(IrCondition.EQ, aftercomma, builder.load(index), IrConstant.of(0));
 
-            String label_whilestart = "Label_whilestart" + String.valueOf(label_cnt);
-            label_cnt += 1;
+            print("print", "(Ljava/lang/String;)V", IrConstant.of(","));
 
-            String label_aftercomma = "Label_aftercomma" + String.valueOf(label_cnt);
-            label_cnt += 1;
+            builder.place(aftercomma);
+            IrValue out = out();
+            if(element_type instanceof BoolType){
+                IrValue element = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getBool", "(I)Z", list, builder.load(index));
+                builder.invoke(IrOpcode.INVOKE_VIRTUAL, "java/io/PrintStream", "print", "(Z)V", out, element);
+            }
+            else{
+                IrValue element = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getInt", "(I)I", list, builder.load(index));
+                builder.invoke(IrOpcode.INVOKE_VIRTUAL, "java/io/PrintStream", "print", "(I)V", out, element);
+            }
+            builder.store(index, builder.binary(IrOpcode.ADD, builder.load(index), IrConstant.of(1)));
+            builder.jump(whilestart);
+
+            builder.place(whileend);
+            print("println", "(Ljava/lang/String;)V", IrConstant.of("]"));
+        }
+        else
+            print.getArg().accept(this);
 
-            command += "iconst_0\n";
-            int index_slot = slotOf("");
-            if (index_slot > 3)
-                command += "istore " + index_slot + "\n";
-            else
-                command += "istore_" + index_slot + "\n";
-
-            int temp_element = slotOf("");
-
-            command += label_whilestart + ":\n";
-            command += "dup\n";
-            command += "invokevirtual List/getSize()I\n";
-            command += "iload " + index_slot + "\n";
-            command += "if_icmple " + label_whileend + "\n";
-
-            command += "iload " + index_slot + "\n";
-            command += "iconst_0\n";
-            command += "if_icmpeq " + label_aftercomma + "\n";
-
-            command += "getstatic java/lang/System/out Ljava/io/PrintStream;\n";
-            command += "ldc \",\"\n";
-            command += "invokevirtual java/io/PrintStream/print(Ljava/lang/String;)V\n";
-
-            command += label_aftercomma + ":\n";
-            command += "dup\n";
-            command += "iload " + index_slot + "\n";
-            command += "invokevirtual List/getElement(I)Ljava/lang/Object;\n";
-            command += "checkcast java/lang/Integer\n";
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "istore " + temp_element + "\n";
-            command += "getstatic java/lang/System/out Ljava/io/PrintStream;\n";
-            command += "iload " + temp_element + "\n";
-            command += "invokevirtual java/io/PrintStream/print(I)V\n";
-            command += "iinc " + index_slot + " 1\n";
-            command += "goto " + label_whilestart + "\n";
-
-            command += label_whileend + ":\n";
-            command += "getstatic java/lang/System/out Ljava/io/PrintStream;\n";
-            command += "ldc \"]\"\n";
-            command += "invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V\n";
-            command += "pop\n";
-        }
-
-
-        addCommand(command);
         return null;
     }
 
     @Override
-    public String visit(ReturnStmt returnStmt) {
-        //todo
-        String command = returnStmt.getReturnedExpr().accept(this);
+    public IrValue visit(ReturnStmt returnStmt) {
+        if(isSelfCall(returnStmt.getReturnedExpr())){
+            selfTailCall((FunctionCall) returnStmt.getReturnedExpr());
+            return null;
+        }
+        if(isTrampolinedCall(returnStmt.getReturnedExpr())){
+            bounce((FunctionCall) returnStmt.getReturnedExpr());
+            return null;
+        }
         Type expr_type = returnStmt.getReturnedExpr().accept(expressionTypeChecker);
 
-        if(expr_type instanceof VoidType)
-            command += "return\n";
+        if(inStepMethod){
+            //step methods hand every result back to the trampoline as an object, null for void
+            builder.ret(boxedExpression(returnStmt.getReturnedExpr()));
+        }
+        else if(expr_type instanceof VoidType){
+            returnStmt.getReturnedExpr().accept(this);
+            builder.ret(null);
+        }
+        else if(isPrimitive(curFuncSymbolTable.getReturnType()))
+            builder.ret(primitiveExpression(returnStmt.getReturnedExpr(), curFuncSymbolTable.getReturnType()));
         else
-            command += "areturn\n";
+            builder.ret(boxedExpression(returnStmt.getReturnedExpr()));
 
-        addCommand(command);
         return null;
     }
 
+    //int and bool elements go to the unboxed IntList and BoolList paths
+    private IrValue appendElement(IrValue list, Expression element, Type element_type) {
+        if(element_type instanceof IntType)
+            return builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "appendInt", "(I)LList;", list, primitiveExpression(element, element_type));
+        else if(element_type instanceof BoolType)
+            return builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "appendBool", "(Z)LList;", list, primitiveExpression(element, element_type));
+        return builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "append", "(Ljava/lang/Object;)LList;", list, boxedExpression(element));
+    }
+
+    //IntType or BoolType when every element has it, elements are then stored unboxed
+    private Type commonElementType(ArrayList<Type> element_types) {
+        for(Type element_type : element_types)
+            if(!isPrimitive(element_type) || element_type.getClass() != element_types.get(0).getClass())
+                return null;
+        return element_types.get(0);
+    }
+
+    //a fresh array of the elements, owned by the list it is handed to
+    private IrValue elementArray(ArrayList<Expression> elements, Type element_type) {
+        IrValue array = builder.newArray(isPrimitive(element_type) ? irType(element_type) : IrType.OBJECT, IrConstant.of(elements.size()));
+        for(int i = 0; i < elements.size(); i++){
+            IrValue element = isPrimitive(element_type) ? primitiveExpression(elements.get(i), element_type) : boxedExpression(elements.get(i));
+            builder.arrayStore(array, IrConstant.of(i), element);
+        }
+        return array;
+    }
+
+    //one list holding the elements, sized to them
+    private IrValue newList(ArrayList<Expression> elements, ArrayList<Type> element_types) {
+        Type element_type = commonElementType(element_types);
+        if(element_type instanceof IntType || element_type instanceof BoolType){
+            String list_class = element_type instanceof IntType ? "IntList" : "BoolList";
+            IrValue list = builder.newObject(list_class);
+            builder.init(list, "(" + (element_type instanceof IntType ? "[I" : "[Z") + ")V", elementArray(elements, element_type));
+            return list;
+        }
+        IrValue list = builder.newObject("List");
+        builder.init(list, "()V");
+        return appendAll(list, elements, element_types);
+    }
+
+    //appends the elements to the list in one call, the list copies what it has at most once
+    private IrValue appendAll(IrValue list, ArrayList<Expression> elements, ArrayList<Type> element_types) {
+        Type element_type = commonElementType(element_types);
+        IrValue array = elementArray(elements, element_type);
+        if(element_type instanceof IntType)
+            return builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "appendInts", "([I)LList;", list, array);
+        else if(element_type instanceof BoolType)
+            return builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "appendBools", "([Z)LList;", list, array);
+        return builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "appendAll", "([Ljava/lang/Object;)LList;", list, array);
+    }
+
+    //the intermediate lists of a :: chain are never named, so the chain is built as one bulk append
+    //onto its first list, or as one list when that is a literal
+    private IrValue appendChain(BinaryExpression binaryExpression) {
+        ArrayList<Expression> elements = new ArrayList<>();
+        Expression base = binaryExpression;
+        while(base instanceof BinaryExpression && ((BinaryExpression) base).getBinaryOperator().equals(BinaryOperator.append)){
+            elements.add(0, ((BinaryExpression) base).getSecondOperand());
+            base = ((BinaryExpression) base).getFirstOperand();
+        }
+        ArrayList<Type> element_types = new ArrayList<>();
+        for(Expression element : elements)
+            element_types.add(element.accept(expressionTypeChecker));
+
+        if(base instanceof ListValue){
+            ListValue literal = (ListValue) base;
+            Type literal_type = ((ListType) literal.accept(expressionTypeChecker)).getType();
+            ArrayList<Expression> all_elements = new ArrayList<>(literal.getElements());
+            ArrayList<Type> all_types = new ArrayList<>(Collections.nCopies(all_elements.size(), literal_type));
+            all_elements.addAll(elements);
+            all_types.addAll(element_types);
+            return newList(all_elements, all_types);
+        }
+        else if(elements.size() > 1)
+            return appendAll(base.accept(this), elements, element_types);
+        return appendElement(base.accept(this), elements.get(0), element_types.get(0));
+    }
+
+    private IrValue operand(Expression expression, Type type) {
+        if(isPrimitive(type))
+            return primitiveExpression(expression, type);
+        return boxedExpression(expression);
+    }
+
+    //the operands in order, int and bool types unboxed; with --parallel the pure expensive ones run as tasks
+    private ArrayList<IrValue> operands(ArrayList<Expression> expressions, ArrayList<Type> types) {
+        ArrayList<Integer> forked = new ArrayList<>();
+        if(parallel)
+            for(int i = 0; i < expressions.size(); i++)
+                if(costEstimator.worthForking(expressions.get(i)))
+                    forked.add(i);
+        ArrayList<IrValue> values = new ArrayList<>();
+        if(forked.size() < 2){
+            for(int i = 0; i < expressions.size(); i++)
+                values.add(operand(expressions.get(i), types.get(i)));
+            return values;
+        }
+
+        IrBlock sequential = builder.newBlock(newLabel("sequential"));
+        IrBlock operands_end = builder.newBlock(newLabel("operandsend"));
+        builder.branch(IrCondition.EQ, sequential, builder.invoke(IrOpcode.INVOKE_STATIC, "Task", "shouldFork", "()Z"));
+
+        //the last expensive operand runs on this thread while the others are stolen
+        int local = forked.remove(forked.size() - 1);
+        Map<Integer, IrVariable> task_temps = new HashMap<>();
+        for(int i : forked){
+            IrValue task = newTask(expressions.get(i));
+            builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Task", "fork", "()Ljava/util/concurrent/ForkJoinTask;", task);
+            IrVariable task_temp = builder.getFunction().newTemp(task.getType());
+            builder.store(task_temp, task);
+            task_temps.put(i, task_temp);
+        }
+        IrValue local_value = operand(expressions.get(local), types.get(local));
+        IrVariable local_temp = builder.getFunction().newTemp(local_value.getType());
+        builder.store(local_temp, local_value);
+
+        //pure operands may be evaluated early, the rest still run in their original order
+        ArrayList<IrValue> forked_values = new ArrayList<>();
+        for(int i = 0; i < expressions.size(); i++){
+            if(i == local)
+                forked_values.add(builder.load(local_temp));
+            else if(task_temps.containsKey(i)){
+                IrValue result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Task", "join", "()Ljava/lang/Object;", builder.load(task_temps.get(i)));
+                forked_values.add(castFromObject(result, types.get(i)));
+            }
+            else
+                forked_values.add(operand(expressions.get(i), types.get(i)));
+        }
+        IrBlock forked_end = builder.getBlock();
+        builder.jump(operands_end);
+
+        builder.place(sequential);
+        ArrayList<IrValue> sequential_values = new ArrayList<>();
+        for(int i = 0; i < expressions.size(); i++)
+            sequential_values.add(operand(expressions.get(i), types.get(i)));
+        IrBlock sequential_end = builder.getBlock();
+        builder.place(operands_end);
+        for(int i = 0; i < expressions.size(); i++){
+            IrType type = forked_values.get(i).getType();
+            if(!type.equals(sequential_values.get(i).getType()))
+                type = IrType.OBJECT;
+            values.add(typed(builder.phi(type, Arrays.asList(forked_end, sequential_end), Arrays.asList(forked_values.get(i), sequential_values.get(i))), types.get(i)));
+        }
+        return values;
+    }
+
+    //compiles expression into parallel$<id>, which takes the current function's arguments, and returns a Task running it
+    private IrValue newTask(Expression expression) {
+        int task_id = taskArgTypes.size();
+        ArrayList<Type> arg_types = new ArrayList<>();
+        StringBuilder descriptor = new StringBuilder("(");
+        if(!inMain){
+            for(Identifier cur_arg : curFuncDec.getArgs()){
+                Type arg_type = curFuncSymbolTable.getArgTypes().get(cur_arg.getName());
+                arg_types.add(arg_type);
+                descriptor.append(primitiveDescriptor(arg_type));
+            }
+        }
+        descriptor.append(")Ljava/lang/Object;");
+        taskArgTypes.add(arg_types);
+
+        IrBuilder outer_builder = builder;
+        IrFunction task_function = siblingFunction("parallel$" + task_id, descriptor.toString());
+        builder = new IrBuilder(task_function);
+        builder.ret(boxedExpression(expression));
+        addMethod(task_function);
+        builder = outer_builder;
+
+        IrValue task = builder.newObject("Task");
+        IrValue args = builder.newArray(IrType.OBJECT, IrConstant.of(arg_types.size()));
+        for(int i = 0; i < arg_types.size(); i++)
+            builder.arrayStore(args, IrConstant.of(i), box(builder.load(builder.getFunction().getParameter(i))));
+        builder.init(task, "(LParallel;I[Ljava/lang/Object;)V", builder.self(), IrConstant.of(task_id), args);
+        return task;
+    }
+
+    //Parallel.runTask, unpacks a task's arguments and calls its parallel$<id> method
+    private void addRunTaskMethod() {
+        IrFunction function = newFunction("public", "runTask", "(I[Ljava/lang/Object;)Ljava/lang/Object;", null);
+        IrBlock reject = builder.newBlock(newLabel("reject"));
+        ArrayList<IrBlock> targets = new ArrayList<>();
+        for(int i = 0; i < taskArgTypes.size(); i++)
+            targets.add(builder.newBlock(newLabel("task")));
+        switchOnTag(targets, reject);
+
+        for(int task_id = 0; task_id < taskArgTypes.size(); task_id++){
+            ArrayList<Type> arg_types = taskArgTypes.get(task_id);
+            StringBuilder descriptor = new StringBuilder("(");
+            builder.place(targets.get(task_id));
+            ArrayList<IrValue> call_args = new ArrayList<>();
+            call_args.add(builder.self());
+            for(int i = 0; i < arg_types.size(); i++){
+                IrValue arg = builder.arrayLoad(builder.load(function.getParameter(1)), IrConstant.of(i));
+                call_args.add(castFromObject(arg, arg_types.get(i)));
+                descriptor.append(primitiveDescriptor(arg_types.get(i)));
+            }
+            descriptor.append(")Ljava/lang/Object;");
+            builder.ret(builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", "parallel$" + task_id, descriptor.toString(), call_args));
+        }
+
+        builder.place(reject);
+        throwIllegalArgument();
+        addMethod(function);
+    }
+
+    private IrValue integerOperation(Expression left, Expression right, IrOpcode operation) {
+        ArrayList<IrValue> values = operands(new ArrayList<>(Arrays.asList(left, right)), new ArrayList<>(Arrays.asList(new IntType(), new IntType())));
+        return typed(builder.binary(operation, values.get(0), values.get(1)), new IntType());
+    }
+
+    //jumps to target when condition evaluates to jumpWhen, falls through otherwise
+    private void branch(Expression condition, IrBlock target, boolean jumpWhen) {
+        if(condition instanceof BoolValue){
+            if(((BoolValue) condition).getConstant() == jumpWhen)
+                builder.jump(target);
+            return;
+        }
+        //a shared condition is a value in a temp, unless this is where it is computed
+        if(cse != null && cse.isShared(condition) && !cseDefining.contains(condition)){
+            builder.branch(jumpWhen ? IrCondition.NE : IrCondition.EQ, target, primitiveExpression(condition, new BoolType()));
+            return;
+        }
+        if(condition instanceof UnaryExpression && ((UnaryExpression) condition).getOperator().equals(UnaryOperator.not)){
+            branch(((UnaryExpression) condition).getOperand(), target, !jumpWhen);
+            return;
+        }
+        if(condition instanceof BinaryExpression){
+            Expression left = ((BinaryExpression) condition).getFirstOperand();
+            Expression right = ((BinaryExpression) condition).getSecondOperand();
+            BinaryOperator operator = ((BinaryExpression) condition).getBinaryOperator();
+            if(operator.equals(BinaryOperator.and) || operator.equals(BinaryOperator.or)){
+                //and jumps early when false, or jumps early when true
+                boolean short_circuit = operator.equals(BinaryOperator.or);
+                if(jumpWhen == short_circuit){
+                    branch(left, target, jumpWhen);
+                    branch(right, target, jumpWhen);
+                }
+                else{
+                    IrBlock skip = builder.newBlock(newLabel("skip"));
+                    branch(left, skip, short_circuit);
+                    branch(right, target, jumpWhen);
+                    builder.place(skip);
+                }
+                return;
+            }
+            if(operator.equals(BinaryOperator.lt)){
+                IrValue left_value = primitiveExpression(left, new IntType());
+                IrValue right_value = primitiveExpression(right, new IntType());
+                builder.branch(jumpWhen ? IrCondition.LT : IrCondition.GE, target, left_value, right_value);
+                return;
+            }
+            if(operator.equals(BinaryOperator.gt)){
+                IrValue left_value = primitiveExpression(left, new IntType());
+                IrValue right_value = primitiveExpression(right, new IntType());
+                builder.branch(jumpWhen ? IrCondition.GT : IrCondition.LE, target, left_value, right_value);
+                return;
+            }
+            if(operator.equals(BinaryOperator.eq) || operator.equals(BinaryOperator.neq)){
+                boolean jump_if_equal = operator.equals(BinaryOperator.eq) == jumpWhen;
+                //int and bool operands of is/not are compared by value, everything else by reference
+                Type left_type = left.accept(expressionTypeChecker);
+                Type right_type = right.accept(expressionTypeChecker);
+                Type compared_type = isPrimitive(left_type) ? left_type : right_type;
+                IrValue left_value;
+                IrValue right_value;
+                if(isPrimitive(compared_type)){
+                    left_value = primitiveExpression(left, compared_type);
+                    right_value = primitiveExpression(right, compared_type);
+                }
+                else{
+                    left_value = boxedExpression(left);
+                    right_value = boxedExpression(right);
+                }
+                builder.branch(jump_if_equal ? IrCondition.EQ : IrCondition.NE, target, left_value, right_value);
+                return;
+            }
+        }
+        builder.branch(jumpWhen ? IrCondition.NE : IrCondition.EQ, target, primitiveExpression(condition, new BoolType()));
+    }
+
+    private IrValue conditionValue(Expression condition) {
+        IrBlock false_block = builder.newBlock(newLabel("false"));
+        branch(condition, false_block, false);
+
+        IrBlock true_block = builder.getBlock();
+        IrBlock after = builder.newBlock(newLabel("after"));
+        builder.jump(after);
+
+        builder.place(false_block);
+        builder.place(after);
+        IrValue value = builder.phi(IrType.BOOL, Arrays.asList(true_block, false_block), Arrays.asList(IrConstant.of(true), IrConstant.of(false)));
+        return typed(value, new BoolType());
+    }
+
     @Override
-    public String visit(BinaryExpression binaryExpression) {
-        //todo
-        String command = "";
+    public IrValue visit(BinaryExpression binaryExpression) {
         Expression left = binaryExpression.getFirstOperand();
         Expression right = binaryExpression.getSecondOperand();
         BinaryOperator operator =  binaryExpression.getBinaryOperator();
-        if (operator.equals(BinaryOperator.add)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += right.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "iadd\n";
-            command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        }
-        else if (operator.equals(BinaryOperator.sub)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += right.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "isub\n";
-            command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        }
-        else if (operator.equals(BinaryOperator.mult)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += right.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "imul\n";
-            command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        }
-        else if (operator.equals(BinaryOperator.div)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += right.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "idiv\n";
-            command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        }
-        else if (operator.equals(BinaryOperator.eq)) { //fptr is void should be checked
-            command += left.accept(this);
-            command += right.accept(this);
-            command += "if_acmpne Label_" + "false" + String.valueOf(label_cnt) + "\n";
-            String label_false = "Label_false" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += "ldc 1\n";
-            command += "goto Label_" + "after" + String.valueOf(label_cnt) + "\n";
-            String label_after = "Label_after" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "false" + ":\n";
-            command += label_false + ":\n";
-            command += "ldc 0\n";
-
-            //command += "Label_" + "after" + ":\n";
-            command += label_after + ":\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-        }
-        else if (operator.equals(BinaryOperator.neq)) { //fptr not void should be checked
-            command += left.accept(this);
-            command += right.accept(this);
-            command += "if_acmpeq Label_" + "false" + String.valueOf(label_cnt) + "\n";
-            String label_false = "Label_false" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += "ldc 1\n";
-            command += "goto Label_" + "after" + String.valueOf(label_cnt) + "\n";
-            String label_after = "Label_after" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "false" + ":\n";
-            command += label_false + ":\n";
-            command += "ldc 0\n";
-
-            //command += "Label_" + "after" + ":\n";
-            command += label_after + ":\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-        }
-        else if (operator.equals(BinaryOperator.and)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Boolean/booleanValue()Z\n";
-            command += "ifeq Label_" + "false" + String.valueOf(label_cnt) + "\n";
-            String label_false = "Label_false" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += right.accept(this);
-            command += "goto Label_" + "endif" + String.valueOf(label_cnt) + "\n";
-            String label_endif = "Label_endif" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "false" + ":\n";
-            command += label_false + ":\n";
-            command += "ldc 0\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-            //command += "Label_" + "endif" + ":\n";
-            command += label_endif + ":\n";
-        }
-        else if (operator.equals(BinaryOperator.or)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Boolean/booleanValue()Z\n";
-            command += "ifne Label_" + "true" + String.valueOf(label_cnt) + "\n";
-            String label_true = "Label_true" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += right.accept(this);
-            command += "goto Label_" + "endif" + String.valueOf(label_cnt) + "\n";
-            String label_endif = "Label_endif" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "true" + ":\n";
-            command += label_true + ":\n";
-            command += "ldc 1\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-            //command += "Label_" + "endif" + ":\n";
-            command += label_endif + ":\n";
-        }
-        else if(operator.equals(BinaryOperator.lt)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += right.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "if_icmpge Label_" + "false" + String.valueOf(label_cnt) + "\n";
-            String label_false = "Label_false" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += "ldc 1\n";
-            command += "goto Label_" + "endif" + String.valueOf(label_cnt) + "\n";
-            String label_endif = "Label_endif" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "false" + ":\n";
-            command += label_false + ":\n";
-
-            command += "ldc 0\n";
-            //command += "Label_" + "endif" + ":\n";
-            command += label_endif + ":\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-        }
-        else if(operator.equals(BinaryOperator.gt)){
-            command += left.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += right.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "if_icmple Label_" + "false" + String.valueOf(label_cnt) + "\n";
-            String label_false = "Label_false" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += "ldc 1\n";
-            command += "goto Label_" + "endif" + String.valueOf(label_cnt) + "\n";
-            String label_endif = "Label_endif" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "false" + ":\n";
-            command += label_false + ":\n";
-            command += "ldc 0\n";
-            //command += "Label_" + "endif" + ":\n";
-            command += label_endif + ":\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-        }
-        else if (operator.equals(BinaryOperator.append)){
-            command = left.accept(this);
-            command += "dup\n";
-            command += right.accept(this);
-            command += "invokevirtual List/addElement(Ljava/lang/Object;)V\n";
-        }
-        return command;
+        if (operator.equals(BinaryOperator.add))
+            return integerOperation(left, right, IrOpcode.ADD);
+        else if (operator.equals(BinaryOperator.sub))
+            return integerOperation(left, right, IrOpcode.SUB);
+        else if (operator.equals(BinaryOperator.mult))
+            return integerOperation(left, right, IrOpcode.MUL);
+        else if (operator.equals(BinaryOperator.div))
+            return integerOperation(left, right, IrOpcode.DIV);
+        else if (operator.equals(BinaryOperator.append))
+            return typed(appendChain(binaryExpression), binaryExpression.accept(expressionTypeChecker));
+        else //is, not, and, or, <, >
+            return conditionValue(binaryExpression);
     }
 
     @Override
-    public String visit(UnaryExpression unaryExpression) {
-        //todo
+    public IrValue visit(UnaryExpression unaryExpression) {
         Expression operand = unaryExpression.getOperand();
         UnaryOperator operator = unaryExpression.getOperator();
-        String command = "";
-        if (operator.equals(UnaryOperator.not)){
-            command += operand.accept(this);
-            command += "invokevirtual java/lang/Boolean/booleanValue()Z\n";
-            command += "ifeq Label_" + "false" + String.valueOf(label_cnt) + "\n";
-            String label_false = "Label_false" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            command += "ldc 0\n";
-            command += "goto Label_" + "after" + String.valueOf(label_cnt) + "\n";
-            String label_after = "Label_after" + String.valueOf(label_cnt);
-            label_cnt += 1;
-
-            //command += "Label_" + "false" + ":\n";
-            command += label_false + ":\n";
-            command += "ldc 1\n";
-            //command += "Label_" + "after" + ":\n";
-            command += label_after + ":\n";
-            command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-        }
-        else if (operator.equals(UnaryOperator.minus)){
-            command += operand.accept(this);
-            command += "invokevirtual java/lang/Integer/intValue()I\n";
-            command += "ineg\n";
-            command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        }
-        return command;
+        if (operator.equals(UnaryOperator.not))
+            return conditionValue(unaryExpression);
+        return typed(builder.negate(primitiveExpression(operand, new IntType())), new IntType());
     }
 
-    @Override
-    public String visit(AnonymousFunction anonymousFunction) {
-        //todo
-        String command = "";
-        try{
-            FunctionSymbolTableItem func = (FunctionSymbolTableItem) SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + anonymousFunction.getName());
-            command += "new Fptr\n";
-            command += "dup\n";
-            command += "aload_0\n";
-            command += "ldc " + "\"" + anonymousFunction.getName() + "\"\n";
-            command += "invokespecial Fptr/<init>(Ljava/lang/Object;Ljava/lang/String;)V\n";
-        }catch (ItemNotFoundException e){
-            int slot_number = slotOf(anonymousFunction.getName());
-            if (slot_number > 3)
-                command += "aload " + String.valueOf(slot_number) + "\n";
-            else
-                command += "aload_" + String.valueOf(slot_number) + "\n";
-        }
-        return command;
+    private IrValue newFptr(String method_name) {
+        IrValue fptr = builder.newObject("Fptr");
+        builder.init(fptr, "(Ljava/lang/Object;Ljava/lang/String;)V", builder.self(), IrConstant.of(method_name));
+        return fptr;
     }
 
-    @Override
-    public String visit(Identifier identifier) {
-        //todo
-        String command = "";
+    private IrValue functionReference(String name) {
         try{
-            FunctionSymbolTableItem func = (FunctionSymbolTableItem) SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + identifier.getName());
-            command += "new Fptr\n";
-            command += "dup\n";
-            command += "aload_0\n";
-            command += "ldc " + "\"" + identifier.getName() + "\"\n";
-            command += "invokespecial Fptr/<init>(Ljava/lang/Object;Ljava/lang/String;)V\n";
+            FunctionSymbolTableItem func_symbol_table = (FunctionSymbolTableItem) SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + name);
+            if(defunctionalize)
+                return typed(builder.box(IrConstant.of(functionTag(name))), new FptrType(name));
+            String method_name = name;
+            if(visited.contains(name) && needsBridge(func_symbol_table)){
+                bridged.add(name);
+                method_name = name + "$boxed";
+            }
+            if(hoistConstants){
+                if(hoistedFunctions.add(method_name))
+                    backend.addField("public static", "fptr$" + method_name, "LFptr;");
+                return typed(builder.getStatic("Main", "fptr$" + method_name, "LFptr;"), new FptrType(name));
+            }
+            return typed(newFptr(method_name), new FptrType(name));
         }catch (ItemNotFoundException e){
-            int slot_number = slotOf(identifier.getName());
-            if (slot_number > 3)
-                command += "aload " + String.valueOf(slot_number) + "\n";
-            else
-                command += "aload_" + String.valueOf(slot_number) + "\n";
+            return typed(builder.load(parameter(name)), curFuncSymbolTable.getArgTypes().get(name));
         }
-        return command;
     }
 
     @Override
-    public String visit(ListAccessByIndex listAccessByIndex) {
-        //todo
-        String command = "";
-        command += listAccessByIndex.getInstance().accept(this);
-        command += listAccessByIndex.getIndex().accept(this);
-        command += "invokevirtual java/lang/Integer/intValue()I\n";
-        command += "invokevirtual List/getElement(I)Ljava/lang/Object;\n";
-        command += "checkcast java/lang/Integer\n";
-        return command;
+    public IrValue visit(AnonymousFunction anonymousFunction) {
+        return functionReference(anonymousFunction.getName());
     }
 
     @Override
-    public String visit(ListSize listSize) {
-        //todo
-        String command = "";
-        command += listSize.getInstance().accept(this);
-        command += "invokevirtual List/getSize()I\n";
-        command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        return command;
+    public IrValue visit(Identifier identifier) {
+        return functionReference(identifier.getName());
     }
 
     @Override
-    public String visit(FunctionCall funcCall) {
-        //todo
-        String command = funcCall.getInstance().accept(this);
+    public IrValue visit(ListAccessByIndex listAccessByIndex) {
+        Type element_type = listAccessByIndex.accept(expressionTypeChecker);
+        IrValue list = listAccessByIndex.getInstance().accept(this);
+        IrValue index = primitiveExpression(listAccessByIndex.getIndex(), new IntType());
+        if(element_type instanceof IntType)
+            return typed(builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getInt", "(I)I", list, index), element_type);
+        else if(element_type instanceof BoolType)
+            return typed(builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getBool", "(I)Z", list, index), element_type);
+        IrValue element = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getElement", "(I)Ljava/lang/Object;", list, index);
+        if(element_type instanceof NoType) //lists of unknown element type are assumed to hold ints
+            return typed(builder.cast(element, "java/lang/Integer"), element_type);
+        return typed(castFromObject(element, element_type), element_type);
+    }
 
-        FptrType fptr = (FptrType) funcCall.getInstance().accept(expressionTypeChecker);
-        FunctionSymbolTableItem func_symbol_table;
-        try {
-            func_symbol_table = (FunctionSymbolTableItem) (SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + fptr.getFunctionName()));
-        }catch(ItemNotFoundException e){
-            func_symbol_table = null;
-        }
+    @Override
+    public IrValue visit(ListSize listSize) {
+        IrValue list = listSize.getInstance().accept(this);
+        return typed(builder.invoke(IrOpcode.INVOKE_VIRTUAL, "List", "getSize", "()I", list), new IntType());
+    }
 
+    //keyword arguments are passed in the order of the function's parameters
+    private ArrayList<Expression> orderedArgs(FunctionCall funcCall, FunctionSymbolTableItem func_symbol_table) {
         ArrayList<Expression> args = funcCall.getArgs();
         Map<Identifier , Expression> args_with_keys = funcCall.getArgsWithKey();
 
-        command += "new java/util/ArrayList\n";
-        command += "dup\n";
-        command += "invokespecial java/util/ArrayList/<init>()V\n";
-
-        int arrayList_slot = slotOf("");
-        if (arrayList_slot > 3)
-            command += "astore " + arrayList_slot + "\n";
-        else
-            command += "astore_" + arrayList_slot + "\n";
-
+        ArrayList<Expression> call_args = new ArrayList<>();
         if(!args.isEmpty()){
-            for(Expression cur_arg : args){
-                if (arrayList_slot > 3)
-                    command += "aload " + arrayList_slot + "\n";
-                else
-                    command += "aload_" + arrayList_slot + "\n";
-                command += cur_arg.accept(this);
-                command += "invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z\n";
-                command += "pop\n";
-            }
+            call_args.addAll(args);
         }else if(!args_with_keys.isEmpty()){
             Map<String, Type> arg_types = func_symbol_table.getArgTypes();
             java.util.Set<String> arg_names = arg_types.keySet();
             for(String arg_name : arg_names){
-                if (arrayList_slot > 3)
-                    command += "aload " + arrayList_slot + "\n";
-                else
-                    command += "aload_" + arrayList_slot + "\n";
-
                 Expression cur_arg = null;
                 for(Identifier cur_id : args_with_keys.keySet()){
                     if(cur_id.getName().equals(arg_name)){
@@ -718,92 +1280,153 @@ public class CodeGenerator extends Visitor<String> {
                         break;
                     }
                 }
-                command += cur_arg.accept(this);
-                command += "invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z\n";
-                command += "pop\n";
+                call_args.add(cur_arg);
             }
         }
+        return call_args;
+    }
 
-        if (arrayList_slot > 3)
-            command += "aload " + arrayList_slot + "\n";
-        else
-            command += "aload_" + arrayList_slot + "\n";
+    @Override
+    public IrValue visit(FunctionCall funcCall) {
+        String callee = calleeResolver.resolve(funcCall.getInstance());
+        if(callee != null && !visited.contains(callee))
+            callee = null;
+
+        IrValue function_value = null;
+        if(callee == null)
+            function_value = funcCall.getInstance().accept(this);
+        //the callee expression may still print, only its Fptr result is dropped
+        else if(funcCall.getInstance() instanceof FunctionCall)
+            funcCall.getInstance().accept(this);
 
-        command += "invokevirtual Fptr/invoke(Ljava/util/ArrayList;)Ljava/lang/Object;\n";
+        FptrType fptr = (FptrType) funcCall.getInstance().accept(expressionTypeChecker);
+        FunctionSymbolTableItem func_symbol_table;
+        try {
+            func_symbol_table = (FunctionSymbolTableItem) (SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + (callee != null ? callee : fptr.getFunctionName())));
+        }catch(ItemNotFoundException e){
+            func_symbol_table = null;
+        }
 
+        ArrayList<Expression> call_args = orderedArgs(funcCall, func_symbol_table);
         Type func_return_type = func_symbol_table.getReturnType();
+
+        if(callee != null){
+            Map<String, Type> arg_types = func_symbol_table.getArgTypes();
+            ArrayList<Identifier> func_args = func_symbol_table.getFuncDeclaration().getArgs();
+            ArrayList<Type> call_arg_types = new ArrayList<>();
+            for(int i = 0; i < call_args.size(); i++)
+                call_arg_types.add(arg_types.get(func_args.get(i).getName()));
+            ArrayList<IrValue> values = operands(call_args, call_arg_types);
+            values.add(0, builder.self());
+            IrValue result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", callee, methodDescriptor(func_symbol_table, false), values);
+            //calls are expressions, a void call gives null like Fptr/invoke does
+            if(result == null)
+                return IrConstant.nullConstant();
+            return typed(result, func_return_type);
+        }
+
+        IrValue result;
+        if(defunctionalize){
+            IrValue tag = builder.unbox(function_value, IrType.INT);
+            StringBuilder descriptor = new StringBuilder("(I");
+            ArrayList<IrValue> values = operands(call_args, new ArrayList<>(Collections.nCopies(call_args.size(), (Type) null)));
+            for(int i = 0; i < call_args.size(); i++)
+                descriptor.append("Ljava/lang/Object;");
+            descriptor.append(")Ljava/lang/Object;");
+            dispatchArities.add(call_args.size());
+            values.add(0, tag);
+            values.add(0, builder.self());
+            result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Main", "dispatch$" + call_args.size(), descriptor.toString(), values);
+        }
+        //Fptr has invoke overloads up to 4 arguments, longer calls pass an Object[]
+        else if(call_args.size() <= 4){
+            StringBuilder descriptor = new StringBuilder("(");
+            ArrayList<IrValue> values = operands(call_args, new ArrayList<>(Collections.nCopies(call_args.size(), (Type) null)));
+            for(int i = 0; i < call_args.size(); i++)
+                descriptor.append("Ljava/lang/Object;");
+            descriptor.append(")Ljava/lang/Object;");
+            values.add(0, function_value);
+            result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Fptr", "invoke", descriptor.toString(), values);
+        }
+        else{
+            IrValue args = builder.newArray(IrType.OBJECT, IrConstant.of(call_args.size()));
+            for(int i = 0; i < call_args.size(); i++)
+                builder.arrayStore(args, IrConstant.of(i), boxedExpression(call_args.get(i)));
+            result = builder.invoke(IrOpcode.INVOKE_VIRTUAL, "Fptr", "invoke", "([Ljava/lang/Object;)Ljava/lang/Object;", function_value, args);
+        }
+
         if(func_return_type instanceof IntType)
-            command += "checkcast java/lang/Integer\n";
+            result = builder.cast(result, "java/lang/Integer");
         else if(func_return_type instanceof BoolType)
-            command += "checkcast java/lang/Boolean\n";
+            result = builder.cast(result, "java/lang/Boolean");
         else if(func_return_type instanceof StringType)
-            command += "checkcast java/lang/String\n";
+            result = builder.cast(result, "java/lang/String");
         else if(func_return_type instanceof ListType)
-            command += "checkcast List\n";
+            result = builder.cast(result, "List");
         else if(func_return_type instanceof FptrType)
-            command += "checkcast Fptr\n";
+            result = builder.cast(result, functionValueClass());
+        return typed(result, func_return_type);
+    }
 
-        return command;
+    private boolean isConstantList(ListValue listValue) {
+        for(Expression element : listValue.getElements())
+            if(!(element instanceof IntValue || element instanceof BoolValue || element instanceof StringValue))
+                return false;
+        return true;
     }
 
-    @Override
-    public String visit(ListValue listValue) {
-        //todo
-        String command = "";
-        command += "new java/util/ArrayList\n";
-        command += "dup\n";
-        command += "invokespecial java/util/ArrayList/<init>()V\n";
-        int arrayList_slot = slotOf("");
-        if (arrayList_slot > 3)
-            command += "astore " + arrayList_slot + "\n";
-        else
-            command += "astore_" + arrayList_slot + "\n";
+    //lists are persistent, so one built in <clinit> can be handed out every time the literal is evaluated
+    private IrValue hoistList(ListValue listValue) {
+        String field = "list$" + hoistedLists;
+        backend.addField("public static final", field, "LList;");
+        hoistedLists += 1;
+        IrBuilder method_builder = builder;
+        builder = classInitBuilder;
+        hoistConstants = false;
+        IrValue list = listValue.accept(this);
+        hoistConstants = true;
+        builder.putStatic("Main", field, "LList;", list);
+        builder = method_builder;
+        return builder.getStatic("Main", field, "LList;");
+    }
 
-        for (Expression element: listValue.getElements()){
-            if (arrayList_slot > 3)
-                command += "aload " + arrayList_slot + "\n";
-            else
-                command += "aload_" + arrayList_slot + "\n";
-            command += element.accept(this);
-            command += "invokevirtual java/util/ArrayList/add(Ljava/lang/Object;)Z\n";
-            command += "pop\n";
-        }
-        command += "new List\n";
-        command += "dup\n";
-        if (arrayList_slot > 3)
-            command += "aload " + arrayList_slot + "\n";
-        else
-            command += "aload_" + arrayList_slot + "\n";
-        command += "invokespecial List/<init>(Ljava/util/ArrayList;)V\n";
-        return command;
+    @Override
+    public IrValue visit(ListValue listValue) {
+        Type list_type = listValue.accept(expressionTypeChecker);
+        if(hoistConstants && isConstantList(listValue))
+            return typed(hoistList(listValue), list_type);
+        Type element_type = ((ListType) list_type).getType();
+        if(listValue.getElements().size() > 1)
+            return typed(newList(listValue.getElements(), new ArrayList<>(Collections.nCopies(listValue.getElements().size(), element_type))), list_type);
+        String list_class = "List";
+        if(element_type instanceof IntType)
+            list_class = "IntList";
+        else if(element_type instanceof BoolType)
+            list_class = "BoolList";
+        IrValue list = builder.newObject(list_class);
+        builder.init(list, "()V");
+        for (Expression element: listValue.getElements())
+            list = appendElement(list, element, element_type);
+        return typed(list, list_type);
     }
 
     @Override
-    public String visit(IntValue intValue) {
-        String command = "ldc " + intValue.getConstant() + "\n";
-        command += "invokestatic java/lang/Integer/valueOf(I)Ljava/lang/Integer;\n";
-        return command;
+    public IrValue visit(IntValue intValue) {
+        return typed(IrConstant.of(intValue.getConstant()), new IntType());
     }
 
     @Override
-    public String visit(BoolValue boolValue) {
-        String command = "ldc " + (boolValue.getConstant() ? 1 : 0) + "\n";
-        command += "invokestatic java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;\n";
-        return command;
+    public IrValue visit(BoolValue boolValue) {
+        return typed(IrConstant.of(boolValue.getConstant()), new BoolType());
     }
 
     @Override
-    public String visit(StringValue stringValue) {
-        //todo
-        //TODO string ha bayad ba " vared shavand
-        String command = "ldc \"" + stringValue.getConstant() + "\"\n";
-        return command;
+    public IrValue visit(StringValue stringValue) {
+        return typed(IrConstant.of(stringValue.getConstant()), new StringType());
     }
 
     @Override
-    public String visit(VoidValue voidValue) {
-        //todo
-        String command = "";
-        return command;
+    public IrValue visit(VoidValue voidValue) {
+        return typed(IrConstant.nullConstant(), new VoidType());
     }
 }
@@ -0,0 +1,255 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.VoidValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.ast.types.Type;
+import main.ast.types.single.BoolType;
+import main.ast.types.single.IntType;
+import main.visitor.Visitor;
+import main.visitor.type.ExpressionTypeChecker;
+
+import java.util.*;
+
+//pure int and bool sub-expressions of a function body that are evaluated again after an earlier evaluation on every path
+//the earlier one is kept in a temp, the later ones load it
+//a branch, the right operand of and/or and a keyword argument may not run, what they evaluate is only reused inside them
+public class CommonSubexpressions extends Visitor<Void> {
+    private final ExpressionTypeChecker expressionTypeChecker;
+    private final CostEstimator costEstimator;
+    private final Deque<Map<String, Expression>> scopes = new ArrayDeque<>();
+    //later occurrence -> the occurrence whose value it loads
+    private final Map<Expression, Expression> reuses = new IdentityHashMap<>();
+    //occurrences that store their value, with the type it has
+    private final Map<Expression, Type> stored = new IdentityHashMap<>();
+    private final Map<Expression, Type> candidates = new IdentityHashMap<>();
+    private final ArrayList<Expression> definitions = new ArrayList<>();
+
+    public CommonSubexpressions(ExpressionTypeChecker expressionTypeChecker, CostEstimator costEstimator) {
+        this.expressionTypeChecker = expressionTypeChecker;
+        this.costEstimator = costEstimator;
+    }
+
+    public void analyse(Statement body) {
+        scopes.push(new HashMap<>());
+        body.accept(this);
+        scopes.pop();
+        Set<Expression> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+        reused.addAll(reuses.values());
+        for (Expression definition : definitions)
+            if (reused.contains(definition))
+                stored.put(definition, candidates.get(definition));
+    }
+
+    public boolean isShared(Expression expression) {
+        return stored.containsKey(expression) || reuses.containsKey(expression);
+    }
+
+    public boolean isStored(Expression expression) {
+        return stored.containsKey(expression);
+    }
+
+    public Expression getDefinition(Expression expression) {
+        return reuses.get(expression);
+    }
+
+    public Type getType(Expression expression) {
+        Expression definition = reuses.getOrDefault(expression, expression);
+        return stored.get(definition);
+    }
+
+    private boolean isCandidate(Expression expression) {
+        if (candidates.containsKey(expression))
+            return true;
+        if (expression instanceof Identifier || expression instanceof AnonymousFunction || expression instanceof ListValue
+                || expression instanceof IntValue || expression instanceof BoolValue || expression instanceof StringValue
+                || expression instanceof VoidValue)
+            return false;
+        Type type = expression.accept(expressionTypeChecker);
+        if (!(type instanceof IntType) && !(type instanceof BoolType) || !costEstimator.isPure(expression))
+            return false;
+        candidates.put(expression, type);
+        return true;
+    }
+
+    //the same text always has the same value inside one function, its parameters are never reassigned
+    private String key(Expression expression) {
+        if (expression instanceof Identifier)
+            return ((Identifier) expression).getName();
+        if (expression instanceof AnonymousFunction)
+            return ((AnonymousFunction) expression).getName();
+        if (expression instanceof IntValue)
+            return String.valueOf(((IntValue) expression).getConstant());
+        if (expression instanceof BoolValue)
+            return String.valueOf(((BoolValue) expression).getConstant());
+        if (expression instanceof StringValue)
+            return "\"" + ((StringValue) expression).getConstant() + "\"";
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            return "(" + binaryExpression.getBinaryOperator() + " " + key(binaryExpression.getFirstOperand()) + " "
+                    + key(binaryExpression.getSecondOperand()) + ")";
+        }
+        if (expression instanceof UnaryExpression) {
+            UnaryExpression unaryExpression = (UnaryExpression) expression;
+            return "(" + unaryExpression.getOperator() + " " + key(unaryExpression.getOperand()) + ")";
+        }
+        if (expression instanceof ListAccessByIndex) {
+            ListAccessByIndex listAccessByIndex = (ListAccessByIndex) expression;
+            return "(get " + key(listAccessByIndex.getInstance()) + " " + key(listAccessByIndex.getIndex()) + ")";
+        }
+        if (expression instanceof ListSize)
+            return "(size " + key(((ListSize) expression).getInstance()) + ")";
+        if (expression instanceof FunctionCall) {
+            FunctionCall funcCall = (FunctionCall) expression;
+            StringBuilder key = new StringBuilder("(call ").append(key(funcCall.getInstance()));
+            for (Expression arg : funcCall.getArgs())
+                key.append(" ").append(key(arg));
+            for (Map.Entry<Identifier, Expression> arg : funcCall.getArgsWithKey().entrySet())
+                key.append(" ").append(arg.getKey().getName()).append("=").append(key(arg.getValue()));
+            return key.append(")").toString();
+        }
+        StringBuilder key = new StringBuilder("[");
+        if (expression instanceof ListValue)
+            for (Expression element : ((ListValue) expression).getElements())
+                key.append(" ").append(key(element));
+        return key.append("]").toString();
+    }
+
+    //true when an earlier evaluation is available, the expression's operands are then never evaluated
+    private boolean reuse(Expression expression) {
+        if (!isCandidate(expression))
+            return false;
+        String key = key(expression);
+        for (Map<String, Expression> scope : scopes) {
+            Expression definition = scope.get(key);
+            if (definition != null) {
+                reuses.put(expression, definition);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void define(Expression expression) {
+        if (!isCandidate(expression))
+            return;
+        scopes.peek().put(key(expression), expression);
+        definitions.add(expression);
+    }
+
+    private void conditionally(Statement stmt) {
+        scopes.push(new HashMap<>());
+        stmt.accept(this);
+        scopes.pop();
+    }
+
+    private void conditionally(Expression expression) {
+        scopes.push(new HashMap<>());
+        expression.accept(this);
+        scopes.pop();
+    }
+
+    @Override
+    public Void visit(BlockStmt blockStmt) {
+        for (Statement stmt : blockStmt.getStatements())
+            stmt.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.getCondition().accept(this);
+        conditionally(conditionalStmt.getThenBody());
+        if (conditionalStmt.getElseBody() != null)
+            conditionally(conditionalStmt.getElseBody());
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionCallStmt funcCallStmt) {
+        funcCallStmt.getFunctionCall().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrintStmt print) {
+        print.getArg().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStmt returnStmt) {
+        returnStmt.getReturnedExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryExpression binaryExpression) {
+        if (reuse(binaryExpression))
+            return null;
+        binaryExpression.getFirstOperand().accept(this);
+        switch (binaryExpression.getBinaryOperator()) {
+            case and:
+            case or:
+                conditionally(binaryExpression.getSecondOperand());
+                break;
+            default:
+                binaryExpression.getSecondOperand().accept(this);
+        }
+        define(binaryExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryExpression unaryExpression) {
+        if (reuse(unaryExpression))
+            return null;
+        unaryExpression.getOperand().accept(this);
+        define(unaryExpression);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListAccessByIndex listAccessByIndex) {
+        if (reuse(listAccessByIndex))
+            return null;
+        listAccessByIndex.getInstance().accept(this);
+        listAccessByIndex.getIndex().accept(this);
+        define(listAccessByIndex);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListSize listSize) {
+        if (reuse(listSize))
+            return null;
+        listSize.getInstance().accept(this);
+        define(listSize);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListValue listValue) {
+        for (Expression element : listValue.getElements())
+            element.accept(this);
+        return null;
+    }
+
+    //keyword arguments are evaluated in parameter order, which is not the order they are written in
+    @Override
+    public Void visit(FunctionCall funcCall) {
+        if (reuse(funcCall))
+            return null;
+        funcCall.getInstance().accept(this);
+        for (Expression arg : funcCall.getArgs())
+            arg.accept(this);
+        for (Expression arg : funcCall.getArgsWithKey().values())
+            conditionally(arg);
+        define(funcCall);
+        return null;
+    }
+}
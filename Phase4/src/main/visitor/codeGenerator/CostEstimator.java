@@ -0,0 +1,145 @@
+package main.visitor.codeGenerator;
+
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.VoidValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.visitor.Visitor;
+
+import java.util.*;
+
+//rough static cost of evaluating an expression, whether it can have any visible effect and whether it always finishes
+public class CostEstimator extends Visitor<Integer> {
+    public static final int CALL_COST = 10;
+    //a call that may recurse is assumed to do as much work as it takes to be worth a task
+    public static final int RECURSIVE_CALL_COST = 1000;
+    public static final int FORK_THRESHOLD = RECURSIVE_CALL_COST;
+
+    private final CalleeResolver calleeResolver;
+    private final CallGraph callGraph;
+    private final Map<String, Boolean> reachesRecursion = new HashMap<>();
+    private boolean pure;
+    //can not throw or run forever either
+    private boolean removable;
+
+    public CostEstimator(CalleeResolver calleeResolver, CallGraph callGraph) {
+        this.calleeResolver = calleeResolver;
+        this.callGraph = callGraph;
+    }
+
+    public int estimate(Expression expression) {
+        pure = true;
+        removable = true;
+        return expression.accept(this);
+    }
+
+    //pure and expensive enough to be evaluated on another thread
+    public boolean worthForking(Expression expression) {
+        int cost = estimate(expression);
+        return pure && cost >= FORK_THRESHOLD;
+    }
+
+    //evaluating it can not print or call an unknown function
+    public boolean isPure(Expression expression) {
+        estimate(expression);
+        return pure;
+    }
+
+    //pure, and it can not divide by zero, index past a list or call a function that may not return,
+    //so leaving out an evaluation whose value is unused changes nothing
+    public boolean isRemovable(Expression expression) {
+        estimate(expression);
+        return pure && removable;
+    }
+
+    private boolean reachesRecursion(String function) {
+        if (reachesRecursion.containsKey(function))
+            return reachesRecursion.get(function);
+        boolean result = callGraph.isRecursive(function);
+        for (String callee : callGraph.getCalls(function))
+            result = result || reachesRecursion(callee);
+        reachesRecursion.put(function, result);
+        return result;
+    }
+
+    @Override
+    public Integer visit(BinaryExpression binaryExpression) {
+        if (binaryExpression.getBinaryOperator() == BinaryOperator.div)
+            removable = false;
+        return 1 + binaryExpression.getFirstOperand().accept(this) + binaryExpression.getSecondOperand().accept(this);
+    }
+
+    @Override
+    public Integer visit(UnaryExpression unaryExpression) {
+        return 1 + unaryExpression.getOperand().accept(this);
+    }
+
+    @Override
+    public Integer visit(ListAccessByIndex listAccessByIndex) {
+        removable = false;
+        return 1 + listAccessByIndex.getInstance().accept(this) + listAccessByIndex.getIndex().accept(this);
+    }
+
+    @Override
+    public Integer visit(ListSize listSize) {
+        return 1 + listSize.getInstance().accept(this);
+    }
+
+    @Override
+    public Integer visit(ListValue listValue) {
+        int cost = 1;
+        for (Expression element : listValue.getElements())
+            cost += element.accept(this);
+        return cost;
+    }
+
+    @Override
+    public Integer visit(FunctionCall funcCall) {
+        String callee = calleeResolver.resolve(funcCall.getInstance());
+        int cost = funcCall.getInstance().accept(this);
+        for (Expression arg : funcCall.getArgs())
+            cost += arg.accept(this);
+        for (Expression arg : funcCall.getArgsWithKey().values())
+            cost += arg.accept(this);
+        if (callee == null || callGraph.getCalls(callee) == null || !callGraph.isPure(callee)) {
+            pure = false;
+            return cost + CALL_COST;
+        }
+        if (!callGraph.isTotal(callee))
+            removable = false;
+        return cost + (reachesRecursion(callee) ? RECURSIVE_CALL_COST : CALL_COST);
+    }
+
+    @Override
+    public Integer visit(Identifier identifier) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(AnonymousFunction anonymousFunction) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(IntValue intValue) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(BoolValue boolValue) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(StringValue stringValue) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(VoidValue voidValue) {
+        return 1;
+    }
+}
@@ -0,0 +1,106 @@
+package main.visitor.codeGenerator;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class Instruction {
+    private final String opcode;
+    private final String operand;
+
+    public Instruction(String opcode, String operand) {
+        this.opcode = opcode;
+        this.operand = operand;
+    }
+
+    public static Instruction label(String name) {
+        return new Instruction(null, name);
+    }
+
+    public boolean isLabel() {
+        return opcode == null;
+    }
+
+    public String getOpcode() {
+        return opcode;
+    }
+
+    public String getOperand() {
+        return operand;
+    }
+
+    //the local an instruction reads or writes, "iload_2" and "iload 2" alike, -1 for anything else
+    public int getLocalSlot() {
+        if (isLabel())
+            return -1;
+        if (opcode.equals("iinc"))
+            return Integer.parseInt(operand.split(" ")[0]);
+        if (!opcode.matches("[ilfda](load|store)(_[0-3])?"))
+            return -1;
+        if (operand == null)
+            return opcode.charAt(opcode.length() - 1) - '0';
+        return Integer.parseInt(operand);
+    }
+
+    public boolean loadsLocal() {
+        return getLocalSlot() >= 0 && (opcode.contains("load") || opcode.equals("iinc"));
+    }
+
+    public boolean storesLocal() {
+        return getLocalSlot() >= 0 && (opcode.contains("store") || opcode.equals("iinc"));
+    }
+
+    public int getLocalWords() {
+        char kind = opcode.charAt(0);
+        return kind == 'l' || kind == 'd' ? 2 : 1;
+    }
+
+    //the same access to another local, in its short form when there is one
+    public Instruction withLocalSlot(int slot) {
+        if (opcode.equals("iinc"))
+            return new Instruction(opcode, slot + " " + operand.split(" ")[1]);
+        String base = opcode.contains("_") ? opcode.substring(0, opcode.indexOf('_')) : opcode;
+        if (slot > 3)
+            return new Instruction(base, String.valueOf(slot));
+        return new Instruction(base + "_" + slot, null);
+    }
+
+    //control never falls through to the next instruction
+    public boolean endsPath() {
+        return !isLabel() && (opcode.equals("goto") || opcode.equals("goto_w") || opcode.equals("athrow")
+                || opcode.endsWith("return") || opcode.equals("tableswitch"));
+    }
+
+    //labels a jump or tableswitch may continue at
+    public List<String> getTargets() {
+        if (isLabel())
+            return List.of();
+        if (opcode.equals("tableswitch")) {
+            String[] parts = operand.split(" ");
+            return Arrays.asList(parts).subList(2, parts.length);
+        }
+        if (opcode.startsWith("if") || opcode.startsWith("goto"))
+            return List.of(operand);
+        return List.of();
+    }
+
+    @Override
+    public String toString() {
+        if (isLabel())
+            return operand + ":";
+        if (operand == null)
+            return opcode;
+        if (opcode.equals("tableswitch"))
+            return tableswitchText();
+        return opcode + " " + operand;
+    }
+
+    //the operand is "low high target... default", jasmin wants one target per line
+    private String tableswitchText() {
+        String[] parts = operand.split(" ");
+        StringBuilder text = new StringBuilder("tableswitch " + parts[0] + " " + parts[1]);
+        for (int i = 2; i < parts.length - 1; i++)
+            text.append("\n\t\t\t").append(parts[i]);
+        text.append("\n\t\t\tdefault : ").append(parts[parts.length - 1]);
+        return text.toString();
+    }
+}
@@ -0,0 +1,558 @@
+package main.visitor.codeGenerator;
+
+import main.ir.*;
+import main.ir.pass.VariableLiveness;
+
+import java.util.*;
+
+//turns a function's IR into JVM instructions
+//a value stays on the operand stack from where it is made to where it is used as long as values are used in the order
+//they were pushed, constants and the instance are pushed right where they are needed, and the first operand of an
+//instruction may be dup'ed for uses after it; any other value is kept in a temp, found by selecting again until none is
+//missing. A value may stay on the stack across jumps when one block further on is the only one using it
+//A load of a parameter nothing stores to is repeated where it is needed rather than kept in a temp
+public class InstructionSelector {
+    private final IrFunction function;
+    private final int paramWords;
+    private final Map<IrInstruction, IrVariable> spilled = new HashMap<>();
+    //variables nothing stores to, a load of one is repeated where its value is needed instead of kept in a temp
+    private final Set<IrVariable> readOnly = new HashSet<>();
+    //the value the last try could not leave on the stack, null when it went through
+    private IrInstruction toSpill;
+
+    private CodeBuffer code;
+    private Map<IrVariable, Integer> slots;
+    private int nextSlot;
+    private Map<IrInstruction, Integer> remaining;
+    private Map<IrInstruction, Integer> positions;
+    private Set<IrBlock> labelled;
+    //the loads and adds folded into an iinc, and the stores that become one
+    private Set<IrInstruction> folded;
+    private Map<IrInstruction, Integer> increments;
+    //values each block starts with on the stack, as the first jump to it left them
+    private Map<IrBlock, List<IrValue>> stackIn;
+    private ArrayList<Entry> stack;
+    private IrBlock nextBlock;
+
+    private static class Entry {
+        private final IrValue value;
+        //where the code computing the value starts, -1 when the value was on the stack before the block began
+        private final int start;
+        //the block's first instruction that helps compute it, -1 likewise
+        private final int first;
+
+        private Entry(IrValue value, int start, int first) {
+            this.value = value;
+            this.start = start;
+            this.first = first;
+        }
+    }
+
+    public InstructionSelector(IrFunction function) {
+        this.function = function;
+        int words = function.isStatic() ? 0 : 1;
+        for (IrVariable parameter : function.getParameters())
+            words += parameter.getType().getWords();
+        this.paramWords = words;
+        readOnly.addAll(function.getParameters());
+        for (IrBlock block : function.getBlocks())
+            for (IrInstruction instruction : block.getInstructions())
+                if (instruction.getOpcode() == IrOpcode.STORE)
+                    readOnly.remove(instruction.getVariable());
+    }
+
+    public CodeBuffer select() {
+        spillSharedValues();
+        while (true) {
+            toSpill = null;
+            CodeBuffer selected = attempt();
+            if (toSpill == null)
+                return selected;
+            spill(toSpill);
+        }
+    }
+
+    //where each temp's slot moves to: two temps share a slot only if neither is live where the other is stored,
+    //temps are placed in the order they first appear, each in the lowest slot its neighbours leave free
+    public Map<Integer, Integer> sharedSlots() {
+        Map<Integer, Integer> renamed = new HashMap<>();
+        if (slots.isEmpty())
+            return renamed;
+        VariableLiveness liveness = new VariableLiveness(function, spilled);
+        Map<IrVariable, Set<IrVariable>> interference = new HashMap<>();
+        VariableLiveness.Stored interfere = (variable, liveAfter) -> {
+            for (IrVariable other : liveAfter) {
+                if (other == variable)
+                    continue;
+                interference.computeIfAbsent(variable, k -> new HashSet<>()).add(other);
+                interference.computeIfAbsent(other, k -> new HashSet<>()).add(variable);
+            }
+        };
+        //a temp loaded before any store interferes with everything live on entry
+        Set<IrVariable> entry = liveness.getIn(function.getEntry());
+        for (IrVariable variable : entry)
+            interfere.accept(variable, entry);
+        for (IrBlock block : function.getBlocks()) {
+            Set<IrVariable> live = new HashSet<>(liveness.getOut(block));
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = instructions.size() - 1; i >= 0; i--)
+                liveness.step(instructions.get(i), live, interfere);
+        }
+
+        List<IrVariable> temps = new ArrayList<>(slots.keySet());
+        temps.sort(Comparator.comparing(slots::get));
+        Map<IrVariable, Integer> placed = new HashMap<>();
+        for (IrVariable temp : temps) {
+            Set<Integer> taken = new HashSet<>();
+            for (IrVariable other : interference.getOrDefault(temp, Set.of()))
+                if (placed.containsKey(other)) {
+                    taken.add(placed.get(other));
+                    if (other.getType().getWords() == 2)
+                        taken.add(placed.get(other) + 1);
+                }
+            int words = temp.getType().getWords();
+            int slot = paramWords;
+            while (taken.contains(slot) || words == 2 && taken.contains(slot + 1))
+                slot++;
+            placed.put(temp, slot);
+            renamed.put(slots.get(temp), slot);
+        }
+        return renamed;
+    }
+
+    private void spill(IrInstruction value) {
+        if (spilled.containsKey(value))
+            throw new IllegalStateException("no stack order for " + value.getName() + " in " + function.getName());
+        if (value.getOpcode() == IrOpcode.PHI) {
+            //every phi of a block is kept on the stack or none is, so all edges into it leave the same stack
+            for (IrInstruction phi : value.getBlock().getPhis())
+                if (!spilled.containsKey(phi))
+                    spilled.put(phi, function.newTemp(phi.getType()));
+            return;
+        }
+        if (isReload(value)) {
+            spilled.put(value, value.getVariable());
+            return;
+        }
+        spilled.put(value, function.newTemp(value.getType()));
+    }
+
+    private boolean isReload(IrInstruction value) {
+        return value.getOpcode() == IrOpcode.LOAD && readOnly.contains(value.getVariable());
+    }
+
+    //values used in more than one block go to a temp from the start, a value used in a single other block may ride the stack there
+    private void spillSharedValues() {
+        Map<IrInstruction, Set<IrBlock>> users = new LinkedHashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            for (IrInstruction instruction : block.getInstructions()) {
+                for (int i = 0; i < instruction.getOperands().size(); i++) {
+                    IrValue operand = instruction.getOperand(i);
+                    if (!(operand instanceof IrInstruction))
+                        continue;
+                    //a phi's operand is used at the end of the block it comes from
+                    IrBlock user = instruction.getOpcode() == IrOpcode.PHI ? instruction.getTargets().get(i) : block;
+                    users.computeIfAbsent((IrInstruction) operand, k -> new HashSet<>()).add(user);
+                }
+            }
+        }
+        for (Map.Entry<IrInstruction, Set<IrBlock>> used : users.entrySet())
+            if (used.getValue().size() > 1)
+                spill(used.getKey());
+    }
+
+    private CodeBuffer attempt() {
+        code = new CodeBuffer();
+        slots = new HashMap<>();
+        nextSlot = paramWords;
+        remaining = function.countUses();
+        positions = new HashMap<>();
+        stackIn = new HashMap<>();
+        findLabels();
+        findIncrements();
+        List<IrBlock> blocks = function.getBlocks();
+        for (int b = 0; b < blocks.size(); b++) {
+            nextBlock = b + 1 < blocks.size() ? blocks.get(b + 1) : null;
+            if (!selectBlock(blocks.get(b)))
+                return null;
+        }
+        return code;
+    }
+
+    //blocks something jumps to, a jump to the block laid out next is left out
+    private void findLabels() {
+        labelled = new HashSet<>();
+        List<IrBlock> blocks = function.getBlocks();
+        for (int b = 0; b < blocks.size(); b++) {
+            IrInstruction terminator = blocks.get(b).getTerminator();
+            if (terminator == null)
+                continue;
+            IrBlock next = b + 1 < blocks.size() ? blocks.get(b + 1) : null;
+            List<IrBlock> targets = terminator.getTargets();
+            for (int i = 0; i < targets.size(); i++) {
+                boolean fallsThrough = targets.get(i) == next && (terminator.getOpcode() == IrOpcode.JUMP
+                        || terminator.getOpcode() == IrOpcode.BRANCH && i == 1);
+                if (!fallsThrough)
+                    labelled.add(targets.get(i));
+            }
+        }
+    }
+
+    //a local loaded, added a small constant to and stored right back is one iinc
+    private void findIncrements() {
+        folded = new HashSet<>();
+        increments = new HashMap<>();
+        for (IrBlock block : function.getBlocks()) {
+            List<IrInstruction> instructions = block.getInstructions();
+            for (int i = 2; i < instructions.size(); i++) {
+                IrInstruction store = instructions.get(i);
+                IrInstruction add = instructions.get(i - 1);
+                IrInstruction load = instructions.get(i - 2);
+                if (store.getOpcode() != IrOpcode.STORE || add.getOpcode() != IrOpcode.ADD || load.getOpcode() != IrOpcode.LOAD
+                        || !store.getType().isVoid() || !add.getType().equals(IrType.INT))
+                    continue;
+                if (store.getOperand(0) != add || add.getOperand(0) != load || load.getVariable() != store.getVariable())
+                    continue;
+                if (!(add.getOperand(1) instanceof IrConstant) || remaining.get(add) != 1 || remaining.get(load) != 1)
+                    continue;
+                int constant = (Integer) ((IrConstant) add.getOperand(1)).getValue();
+                if (constant < Byte.MIN_VALUE || constant > Byte.MAX_VALUE)
+                    continue;
+                folded.add(load);
+                folded.add(add);
+                increments.put(store, constant);
+            }
+        }
+    }
+
+    private int slotOf(IrVariable variable) {
+        if (variable.isParameter())
+            return variable.getSlot();
+        Integer slot = slots.get(variable);
+        if (slot == null) {
+            slot = nextSlot;
+            nextSlot += variable.getType().getWords();
+            slots.put(variable, slot);
+        }
+        return slot;
+    }
+
+    private static String kind(IrType type) {
+        if (type.isReference())
+            return "a";
+        return type.equals(IrType.LONG) ? "l" : "i";
+    }
+
+    private static Instruction local(String kind, String access, int slot) {
+        if (slot > 3)
+            return new Instruction(kind + access, String.valueOf(slot));
+        return new Instruction(kind + access + "_" + slot, null);
+    }
+
+    //the shortest instruction pushing an int
+    private static Instruction pushInt(int value) {
+        if (value >= -1 && value <= 5)
+            return new Instruction(value == -1 ? "iconst_m1" : "iconst_" + value, null);
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE)
+            return new Instruction("bipush", String.valueOf(value));
+        if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE)
+            return new Instruction("sipush", String.valueOf(value));
+        return new Instruction("ldc", String.valueOf(value));
+    }
+
+    //the instruction pushing an immediate or a value kept in a temp
+    private Instruction materialize(IrValue value) {
+        if (value instanceof IrThis)
+            return new Instruction("aload_0", null);
+        if (value instanceof IrConstant) {
+            Object constant = ((IrConstant) value).getValue();
+            if (constant == null)
+                return new Instruction("aconst_null", null);
+            if (constant instanceof Boolean)
+                return new Instruction((Boolean) constant ? "iconst_1" : "iconst_0", null);
+            if (constant instanceof String)
+                return new Instruction("ldc", "\"" + constant + "\"");
+            if (constant instanceof Long) {
+                long wide = (Long) constant;
+                if (wide == 0 || wide == 1)
+                    return new Instruction("lconst_" + wide, null);
+                return new Instruction("ldc2_w", String.valueOf(wide));
+            }
+            return pushInt((Integer) constant);
+        }
+        IrVariable temp = spilled.get(value);
+        return local(kind(temp.getType()), "load", slotOf(temp));
+    }
+
+    private boolean isResident(IrValue value) {
+        return value instanceof IrInstruction && !spilled.containsKey(value);
+    }
+
+    private boolean selectBlock(IrBlock block) {
+        if (labelled.contains(block))
+            code.addLabel(block.getLabel());
+        stack = new ArrayList<>();
+        List<IrValue> entering = stackIn.computeIfAbsent(block, k -> new ArrayList<>());
+        for (IrValue value : entering)
+            stack.add(new Entry(value, -1, -1));
+        for (IrInstruction phi : block.getPhis())
+            if (!spilled.containsKey(phi))
+                stack.add(new Entry(phi, -1, -1));
+        List<IrInstruction> instructions = block.getInstructions();
+        for (int i = 0; i < instructions.size(); i++)
+            positions.put(instructions.get(i), i);
+        for (int i = 0; i < instructions.size(); i++) {
+            IrInstruction instruction = instructions.get(i);
+            if (instruction.getOpcode() == IrOpcode.PHI || folded.contains(instruction))
+                continue;
+            if (!selectInstruction(block, instruction, i))
+                return false;
+        }
+        return true;
+    }
+
+    //takes the operands off the stack, pushing the immediates and temps among them where they belong
+    //returns where the code computing the operands starts, null when a value has to go to a temp first
+    private Entry consume(List<IrValue> operands, int index) {
+        int depth = stack.size();
+        int position = code.size();
+        int first = index;
+        //the operand on the stack whose code begins at position
+        IrInstruction above = null;
+        for (int j = operands.size() - 1; j >= 0; j--) {
+            IrValue operand = operands.get(j);
+            if (isResident(operand)) {
+                if (depth == 0 || stack.get(depth - 1).value != operand) {
+                    toSpill = (IrInstruction) operand;
+                    return null;
+                }
+                Entry entry = stack.get(depth - 1);
+                if (remaining.get(operand) > 1) {
+                    //the copy left for later uses has to sit below every other operand
+                    if (j > 0) {
+                        toSpill = (IrInstruction) operand;
+                        return null;
+                    }
+                    if (position < 0) {
+                        toSpill = above;
+                        return null;
+                    }
+                    code.insert(position, new Instruction(operand.getType().getWords() == 2 ? "dup2" : "dup", null));
+                }
+                depth -= 1;
+                position = entry.start;
+                first = entry.first < 0 ? -1 : Math.min(first, entry.first);
+                above = (IrInstruction) operand;
+                continue;
+            }
+            //nothing can be put below a value that was on the stack when the block began, nor a temp loaded before it is stored
+            boolean storedLater = operand instanceof IrInstruction && above != null
+                    && spilled.get(operand) != ((IrInstruction) operand).getVariable()
+                    && ((IrInstruction) operand).getBlock() == above.getBlock()
+                    && positions.getOrDefault(operand, -1) >= first;
+            if (position < 0 || storedLater) {
+                toSpill = above;
+                return null;
+            }
+            code.insert(position, materialize(operand));
+        }
+        boolean kept = !operands.isEmpty() && isResident(operands.get(0)) && remaining.get(operands.get(0)) > 1;
+        while (stack.size() > depth + (kept ? 1 : 0))
+            stack.remove(stack.size() - 1);
+        for (IrValue operand : operands)
+            if (operand instanceof IrInstruction)
+                remaining.merge((IrInstruction) operand, -1, Integer::sum);
+        return new Entry(null, position, first);
+    }
+
+    private boolean selectInstruction(IrBlock block, IrInstruction instruction, int index) {
+        if (increments.containsKey(instruction)) {
+            code.add("iinc", slotOf(instruction.getVariable()) + " " + increments.get(instruction));
+            return true;
+        }
+        //a reload is emitted at each use
+        if (spilled.containsKey(instruction) && spilled.get(instruction) == instruction.getVariable())
+            return true;
+        if (instruction.getOpcode() == IrOpcode.JUMP)
+            return selectJump(block, instruction, index);
+        Entry operands = consume(instruction.getOperands(), index);
+        if (operands == null)
+            return false;
+        emit(instruction);
+        if (instruction.isTerminator())
+            return leave(block, instruction.getTargets());
+        if (!instruction.hasValue())
+            return true;
+        IrVariable temp = spilled.get(instruction);
+        if (remaining.getOrDefault(instruction, 0) == 0)
+            code.add(instruction.getType().getWords() == 2 ? "pop2" : "pop");
+        else if (temp != null)
+            code.add(local(kind(temp.getType()), "store", slotOf(temp)));
+        else
+            stack.add(new Entry(instruction, operands.start, operands.first));
+        return true;
+    }
+
+    //pushes what the target's phis take from this block, or stores it when they are kept in temps
+    private boolean selectJump(IrBlock block, IrInstruction jump, int index) {
+        IrBlock target = jump.getTargets().get(0);
+        List<IrInstruction> phis = target.getPhis();
+        List<IrValue> incoming = new ArrayList<>();
+        for (IrInstruction phi : phis)
+            incoming.add(phi.getIncoming(block));
+        if (!phis.isEmpty() && spilled.containsKey(phis.get(0))) {
+            for (int i = phis.size() - 1; i >= 0; i--) {
+                if (consume(List.of(incoming.get(i)), index) == null)
+                    return false;
+                IrVariable temp = spilled.get(phis.get(i));
+                code.add(local(kind(temp.getType()), "store", slotOf(temp)));
+            }
+        }
+        else if (consume(incoming, index) == null)
+            return false;
+        if (target != nextBlock)
+            code.add("goto", target.getLabel());
+        return leave(block, jump.getTargets());
+    }
+
+    //what is still on the stack goes on to every target, which must all agree with the other jumps into them
+    private boolean leave(IrBlock block, List<IrBlock> targets) {
+        List<IrValue> passed = new ArrayList<>();
+        for (Entry entry : stack)
+            passed.add(entry.value);
+        for (IrBlock target : targets) {
+            if (!target.getPhis().isEmpty() && block.getTerminator().getOpcode() != IrOpcode.JUMP)
+                throw new IllegalStateException("only a jump can pass values to the phis of " + target.getLabel());
+            List<IrValue> expected = stackIn.putIfAbsent(target, passed);
+            if (expected == null || expected.equals(passed))
+                continue;
+            List<IrValue> differing = new ArrayList<>(passed);
+            differing.removeAll(expected);
+            if (differing.isEmpty()) {
+                differing = new ArrayList<>(expected);
+                differing.removeAll(passed);
+            }
+            toSpill = (IrInstruction) (differing.isEmpty() ? passed.get(0) : differing.get(0));
+            return false;
+        }
+        return true;
+    }
+
+    private static String compareSuffix(IrCondition condition) {
+        return condition.name().toLowerCase();
+    }
+
+    private void emit(IrInstruction instruction) {
+        IrType type = instruction.getType();
+        switch (instruction.getOpcode()) {
+            case LOAD:
+                code.add(local(kind(type), "load", slotOf(instruction.getVariable())));
+                break;
+            case STORE:
+                code.add(local(kind(instruction.getVariable().getType()), "store", slotOf(instruction.getVariable())));
+                break;
+            case ADD: case SUB: case MUL: case DIV: case NEG: case SHL: case USHR: case OR:
+                code.add(kind(type) + instruction.getOpcode().name().toLowerCase());
+                break;
+            case WIDEN:
+                code.add("i2l");
+                break;
+            case BOX:
+                if (type.getClassName().equals("java/lang/Boolean"))
+                    code.add("invokestatic", "java/lang/Boolean/valueOf(Z)Ljava/lang/Boolean;");
+                else
+                    code.add("invokestatic", "java/lang/Integer/valueOf(I)Ljava/lang/Integer;");
+                break;
+            case UNBOX:
+                if (type.equals(IrType.BOOL))
+                    code.add("invokevirtual", "java/lang/Boolean/booleanValue()Z");
+                else
+                    code.add("invokevirtual", "java/lang/Integer/intValue()I");
+                break;
+            case CAST:
+                code.add("checkcast", instruction.getOwner());
+                break;
+            case INSTANCEOF:
+                code.add("instanceof", instruction.getOwner());
+                break;
+            case NEW:
+                code.add("new", instruction.getOwner());
+                break;
+            case INIT: case INVOKE_SPECIAL:
+                code.add("invokespecial", instruction.getOwner() + "/" + instruction.getMember() + instruction.getDescriptor());
+                break;
+            case INVOKE_VIRTUAL:
+                code.add("invokevirtual", instruction.getOwner() + "/" + instruction.getMember() + instruction.getDescriptor());
+                break;
+            case INVOKE_STATIC:
+                code.add("invokestatic", instruction.getOwner() + "/" + instruction.getMember() + instruction.getDescriptor());
+                break;
+            case NEWARRAY:
+                IrType element = type.getElementType();
+                if (element.equals(IrType.INT))
+                    code.add("newarray", "int");
+                else if (element.equals(IrType.BOOL))
+                    code.add("newarray", "boolean");
+                else
+                    code.add("anewarray", element.getClassName());
+                break;
+            case ARRAY_LOAD:
+                code.add(arrayAccess(type) + "aload");
+                break;
+            case ARRAY_STORE:
+                code.add(arrayAccess(instruction.getOperand(0).getType().getElementType()) + "astore");
+                break;
+            case GET_FIELD:
+                code.add("getfield", instruction.getOwner() + "/" + instruction.getMember() + " " + instruction.getDescriptor());
+                break;
+            case PUT_FIELD:
+                code.add("putfield", instruction.getOwner() + "/" + instruction.getMember() + " " + instruction.getDescriptor());
+                break;
+            case GET_STATIC:
+                code.add("getstatic", instruction.getOwner() + "/" + instruction.getMember() + " " + instruction.getDescriptor());
+                break;
+            case PUT_STATIC:
+                code.add("putstatic", instruction.getOwner() + "/" + instruction.getMember() + " " + instruction.getDescriptor());
+                break;
+            case BRANCH:
+                code.add(branchOpcode(instruction), instruction.getTargets().get(0).getLabel());
+                if (instruction.getTargets().get(1) != nextBlock)
+                    code.add("goto", instruction.getTargets().get(1).getLabel());
+                break;
+            case SWITCH:
+                List<String> targets = new ArrayList<>();
+                for (IrBlock target : instruction.getTargets())
+                    targets.add(target.getLabel());
+                code.addTableswitch(instruction.getLow(), targets.subList(0, targets.size() - 1), targets.get(targets.size() - 1));
+                break;
+            case RETURN:
+                if (instruction.getOperands().isEmpty())
+                    code.add("return");
+                else
+                    code.add(kind(instruction.getOperand(0).getType()) + "return");
+                break;
+            case THROW:
+                code.add("athrow");
+                break;
+            default:
+                throw new IllegalStateException("cannot select " + instruction.getOpcode());
+        }
+    }
+
+    private static String arrayAccess(IrType element) {
+        if (element.equals(IrType.BOOL))
+            return "b";
+        return element.equals(IrType.INT) ? "i" : "a";
+    }
+
+    private static String branchOpcode(IrInstruction branch) {
+        IrCondition condition = branch.getCondition();
+        boolean reference = branch.getOperand(0).getType().isReference();
+        if (branch.getOperands().size() == 1) {
+            if (reference)
+                return condition == IrCondition.NULL ? "ifnull" : "ifnonnull";
+            return "if" + compareSuffix(condition);
+        }
+        return (reference ? "if_acmp" : "if_icmp") + compareSuffix(condition);
+    }
+}
@@ -0,0 +1,165 @@
+package main.visitor.codeGenerator;
+
+import java.util.*;
+
+//the locals and operand stack a method's code needs
+//code generation hands out a new temp for every use, temps that are never live at the same time are put in one slot here
+//once instruction selection has found them from the liveness of the IR
+public class MethodFrame {
+    private final CodeBuffer code;
+    private final int paramWords;
+    private int maxStack = 0;
+    private int maxLocals;
+
+    public MethodFrame(CodeBuffer code, Map<Integer, Integer> sharedSlots, String descriptor, boolean isStatic) {
+        this.code = code;
+        this.paramWords = argumentWords(descriptor) + (isStatic ? 0 : 1);
+        this.maxLocals = paramWords;
+        renameLocals(sharedSlots);
+        computeMaxStack();
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    private static int typeWords(char type) {
+        switch (type) {
+            case 'V':
+                return 0;
+            case 'J': case 'D':
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    //words taken by the arguments of a method descriptor
+    private static int argumentWords(String descriptor) {
+        int words = 0;
+        int i = descriptor.indexOf('(') + 1;
+        while (descriptor.charAt(i) != ')') {
+            char type = descriptor.charAt(i);
+            while (descriptor.charAt(i) == '[')
+                i++;
+            if (descriptor.charAt(i) == 'L')
+                i = descriptor.indexOf(';', i);
+            words += type == '[' ? 1 : typeWords(type);
+            i++;
+        }
+        return words;
+    }
+
+    private static int returnWords(String descriptor) {
+        return typeWords(descriptor.charAt(descriptor.indexOf(')') + 1));
+    }
+
+    private static int fieldWords(String operand) {
+        return typeWords(operand.charAt(operand.indexOf(' ') + 1));
+    }
+
+    private void renameLocals(Map<Integer, Integer> sharedSlots) {
+        for (int i = 0; i < code.size(); i++) {
+            int temp = code.get(i).getLocalSlot();
+            if (temp < paramWords)
+                continue;
+            int slot = sharedSlots.getOrDefault(temp, temp);
+            code.set(i, code.get(i).withLocalSlot(slot));
+            maxLocals = Math.max(maxLocals, slot + code.get(i).getLocalWords());
+        }
+    }
+
+    //words an instruction pops and then pushes
+    private static int stackEffect(Instruction instruction) {
+        if (instruction.isLabel())
+            return 0;
+        String opcode = instruction.getOpcode();
+        String operand = instruction.getOperand();
+        if (opcode.startsWith("invoke")) {
+            String method = operand.split(" ")[0];
+            int receiver = opcode.equals("invokestatic") ? 0 : 1;
+            return returnWords(method) - argumentWords(method) - receiver;
+        }
+        switch (opcode) {
+            case "getstatic":
+                return fieldWords(operand);
+            case "putstatic":
+                return -fieldWords(operand);
+            case "getfield":
+                return fieldWords(operand) - 1;
+            case "putfield":
+                return -fieldWords(operand) - 1;
+            case "multianewarray":
+                return 1 - Integer.parseInt(operand.split(" ")[1]);
+            case "lconst_0": case "lconst_1": case "dconst_0": case "dconst_1": case "dup2": case "ldc2_w":
+            case "lload": case "lload_0": case "lload_1": case "lload_2": case "lload_3":
+            case "dload": case "dload_0": case "dload_1": case "dload_2": case "dload_3":
+                return 2;
+            case "aconst_null": case "iconst_m1": case "iconst_0": case "iconst_1": case "iconst_2": case "iconst_3":
+            case "iconst_4": case "iconst_5": case "bipush": case "sipush": case "ldc": case "ldc_w":
+            case "iload": case "iload_0": case "iload_1": case "iload_2": case "iload_3":
+            case "aload": case "aload_0": case "aload_1": case "aload_2": case "aload_3":
+            case "dup": case "dup_x1": case "dup_x2": case "new": case "i2l": case "i2d":
+                return 1;
+            case "swap": case "ineg": case "lneg": case "checkcast": case "instanceof": case "anewarray": case "newarray":
+            case "arraylength": case "iinc": case "goto": case "goto_w": case "return": case "nop":
+            case "i2b": case "i2c": case "i2s":
+                return 0;
+            case "istore": case "istore_0": case "istore_1": case "istore_2": case "istore_3":
+            case "astore": case "astore_0": case "astore_1": case "astore_2": case "astore_3":
+            case "pop": case "iadd": case "isub": case "imul": case "idiv": case "irem": case "iand": case "ior": case "ixor":
+            case "ishl": case "ishr": case "iushr": case "lshl": case "lshr": case "lushr": case "l2i": case "aaload":
+            case "iaload": case "baload": case "ifeq": case "ifne": case "iflt": case "ifge": case "ifgt": case "ifle":
+            case "ifnull": case "ifnonnull": case "tableswitch": case "lookupswitch": case "ireturn": case "areturn":
+            case "athrow": case "monitorenter": case "monitorexit":
+                return -1;
+            case "lstore": case "lstore_0": case "lstore_1": case "lstore_2": case "lstore_3":
+            case "dstore": case "dstore_0": case "dstore_1": case "dstore_2": case "dstore_3":
+            case "pop2": case "ladd": case "lsub": case "lmul": case "ldiv": case "lrem": case "land": case "lor": case "lxor":
+            case "if_icmpeq": case "if_icmpne": case "if_icmplt": case "if_icmpge": case "if_icmpgt": case "if_icmple":
+            case "if_acmpeq": case "if_acmpne": case "lreturn": case "dreturn":
+                return -2;
+            case "lcmp":
+                return -3;
+            case "aastore": case "iastore": case "bastore":
+                return -3;
+            default:
+                throw new IllegalArgumentException("no stack effect for " + opcode);
+        }
+    }
+
+    //every path reaches an instruction with the same stack, so each is visited once from the first path found to it
+    private void computeMaxStack() {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < code.size(); i++)
+            if (code.get(i).isLabel())
+                labels.put(code.get(i).getOperand(), i);
+        int[] depths = new int[code.size()];
+        Arrays.fill(depths, -1);
+        Deque<Integer> pending = new ArrayDeque<>();
+        if (code.size() > 0) {
+            depths[0] = 0;
+            pending.add(0);
+        }
+        while (!pending.isEmpty()) {
+            int i = pending.poll();
+            Instruction instruction = code.get(i);
+            int depth = depths[i] + stackEffect(instruction);
+            maxStack = Math.max(maxStack, Math.max(depths[i], depth));
+            List<Integer> next = new ArrayList<>();
+            if (!instruction.endsPath() && i + 1 < code.size())
+                next.add(i + 1);
+            for (String target : instruction.getTargets())
+                next.add(labels.get(target));
+            for (int successor : next)
+                if (depths[successor] < 0) {
+                    depths[successor] = depth;
+                    pending.add(successor);
+                }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package main.visitor.codeGenerator;
+
+//a rewrite of one method's instructions, run after the method is generated and before its frame is sized
+public interface MethodPass {
+    CodeBuffer run(CodeBuffer code);
+}
@@ -0,0 +1,94 @@
+package main.visitor.codeGenerator;
+
+import java.util.*;
+import java.util.function.Function;
+
+//rewrites short runs of a method's instructions that the generator leaves redundant, until no rule matches anymore
+//only the last instruction of a run may be a label, so nothing jumps into the middle of one
+public class Peephole implements MethodPass {
+    private static class Rule {
+        private final String name;
+        private final int length;
+        //the instructions to put in place of the run, null when the rule does not apply to it
+        private final Function<List<Instruction>, List<Instruction>> rewrite;
+
+        private Rule(String name, int length, Function<List<Instruction>, List<Instruction>> rewrite) {
+            this.name = name;
+            this.length = length;
+            this.rewrite = rewrite;
+        }
+    }
+
+    private final List<Rule> rules = new ArrayList<>();
+    private final Map<String, Integer> hits = new LinkedHashMap<>();
+    //loads of each local in the method being rewritten
+    private final Map<Integer, Integer> loads = new HashMap<>();
+
+    public Peephole() {
+        rules.add(new Rule("store-load", 2, this::storeLoad));
+        for (Rule rule : rules)
+            hits.put(rule.name, 0);
+    }
+
+    //rule -> number of times it rewrote something, over every method so far
+    public Map<String, Integer> getHits() {
+        return hits;
+    }
+
+    //a stored value loaded right back stays on the stack, the store goes too when nothing else loads it
+    private List<Instruction> storeLoad(List<Instruction> run) {
+        Instruction store = run.get(0);
+        Instruction load = run.get(1);
+        if (!store.storesLocal() || !load.loadsLocal() || store.loadsLocal() || load.storesLocal())
+            return null;
+        if (store.getOpcode().charAt(0) != load.getOpcode().charAt(0) || store.getLocalWords() != 1
+                || store.getLocalSlot() != load.getLocalSlot())
+            return null;
+        if (loads.getOrDefault(store.getLocalSlot(), 0) == 1)
+            return List.of();
+        return List.of(new Instruction("dup", null), run.get(0));
+    }
+
+    private void countLoads(List<Instruction> instructions) {
+        loads.clear();
+        for (Instruction instruction : instructions)
+            if (instruction.loadsLocal())
+                loads.merge(instruction.getLocalSlot(), 1, Integer::sum);
+    }
+
+    @Override
+    public CodeBuffer run(CodeBuffer code) {
+        List<Instruction> instructions = new ArrayList<>();
+        for (int i = 0; i < code.size(); i++)
+            instructions.add(code.get(i));
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            countLoads(instructions);
+            for (Rule rule : rules) {
+                List<Instruction> rewritten = new ArrayList<>();
+                int i = 0;
+                while (i < instructions.size()) {
+                    List<Instruction> replacement = null;
+                    if (i + rule.length <= instructions.size())
+                        replacement = rule.rewrite.apply(instructions.subList(i, i + rule.length));
+                    if (replacement == null) {
+                        rewritten.add(instructions.get(i));
+                        i++;
+                        continue;
+                    }
+                    rewritten.addAll(replacement);
+                    i += rule.length;
+                    hits.merge(rule.name, 1, Integer::sum);
+                    changed = true;
+                }
+                instructions = rewritten;
+                countLoads(instructions);
+            }
+        }
+        CodeBuffer optimized = new CodeBuffer();
+        for (Instruction instruction : instructions)
+            optimized.add(instruction);
+        return optimized;
+    }
+}
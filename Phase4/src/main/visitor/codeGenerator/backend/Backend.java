@@ -0,0 +1,11 @@
+package main.visitor.codeGenerator.backend;
+
+import main.ir.IrFunction;
+
+public interface Backend {
+    void beginClass(String className, String superClassName);
+    void addInterface(String interfaceName);
+    void addField(String accessFlags, String name, String descriptor);
+    void addMethod(IrFunction function);
+    void endClass();
+}
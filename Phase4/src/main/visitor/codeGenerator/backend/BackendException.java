@@ -0,0 +1,8 @@
+package main.visitor.codeGenerator.backend;
+
+//a method or class the backend could not encode, the compile stops instead of emitting a broken class
+public class BackendException extends RuntimeException {
+    public BackendException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
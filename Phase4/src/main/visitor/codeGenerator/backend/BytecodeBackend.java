@@ -0,0 +1,222 @@
+package main.visitor.codeGenerator.backend;
+
+import jas.*;
+import main.visitor.codeGenerator.CodeBuffer;
+import main.visitor.codeGenerator.Instruction;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+//builds class files through the jas library bundled in jasmin.jar, without producing or parsing Jasmin source
+public class BytecodeBackend extends StackMachineBackend implements RuntimeConstants {
+    private static final short classFileMajorVersion = 49;
+    private static final Map<String, Integer> opcodes = new HashMap<>();
+
+    static {
+        for (int opcode = 0; opcode < opcNames.length; opcode++)
+            if (opcNames[opcode] != null)
+                opcodes.put(opcNames[opcode].substring("opc_".length()), opcode);
+    }
+
+    private ClassEnv classEnv;
+    private String className;
+    private byte[] classBytes;
+    private Map<String, Label> labels;
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    private Label getLabel(String name) {
+        Label label = labels.get(name);
+        if (label == null) {
+            label = new Label(name);
+            labels.put(name, label);
+        }
+        return label;
+    }
+
+    private MethodCP methodOperand(String operand) {
+        int descriptorStart = operand.indexOf('(');
+        int nameStart = operand.lastIndexOf('/', descriptorStart);
+        return new MethodCP(operand.substring(0, nameStart), operand.substring(nameStart + 1, descriptorStart),
+                operand.substring(descriptorStart));
+    }
+
+    private FieldCP fieldOperand(String operand) {
+        String[] parts = operand.split(" ");
+        int nameStart = parts[0].lastIndexOf('/');
+        return new FieldCP(parts[0].substring(0, nameStart), parts[0].substring(nameStart + 1), parts[1]);
+    }
+
+    private CP constantOperand(String operand) throws jasError {
+        if (operand.startsWith("\""))
+            return new StringCP(unescape(operand.substring(1, operand.length() - 1)));
+        return new IntegerCP(Integer.parseInt(operand));
+    }
+
+    //string operands are written for Jasmin, so their escapes are read the way Jasmin reads them:
+    //n t r b f and the quotes and backslash after a backslash, u and four hex digits, or up to three octal digits below 0400
+    private static String unescape(String text) throws jasError {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (++i == text.length())
+                throw new jasError("Bad backslash escape sequence.");
+            c = text.charAt(i);
+            switch (c) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case '\\': case '"': case '\'':
+                    value.append(c);
+                    break;
+                case 'u':
+                    if (i + 4 >= text.length() || !text.substring(i + 1, i + 5).matches("[0-9a-fA-F]{4}"))
+                        throw new jasError("Bad '\\u' escape sequence.");
+                    value.append((char) Integer.parseInt(text.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    if (c < '0' || c > '7')
+                        throw new jasError("Bad backslash escape sequence.");
+                    int code = c - '0';
+                    for (int digits = 1; digits < 3 && i + 1 < text.length(); digits++) {
+                        char next = text.charAt(i + 1);
+                        if (next < '0' || next > '7' || code * 8 + (next - '0') > 0377)
+                            break;
+                        code = code * 8 + (next - '0');
+                        i++;
+                    }
+                    value.append((char) code);
+            }
+        }
+        return value.toString();
+    }
+
+    private Insn toInsn(Instruction instruction) throws jasError {
+        if (instruction.isLabel())
+            return getLabel(instruction.getOperand());
+        String operand = instruction.getOperand();
+        Integer opcode = opcodes.get(instruction.getOpcode());
+        if (opcode == null)
+            throw new jasError("unknown instruction " + instruction.getOpcode());
+        if (operand == null)
+            return new Insn(opcode);
+        switch (opcode) {
+            case opc_ifeq: case opc_ifne: case opc_iflt: case opc_ifge: case opc_ifgt: case opc_ifle:
+            case opc_if_icmpeq: case opc_if_icmpne: case opc_if_icmplt: case opc_if_icmpge:
+            case opc_if_icmpgt: case opc_if_icmple: case opc_if_acmpeq: case opc_if_acmpne:
+            case opc_goto: case opc_ifnull: case opc_ifnonnull:
+                return new Insn(opcode, getLabel(operand), 0);
+            case opc_ldc: case opc_ldc_w:
+                return new Insn(opc_ldc_w, constantOperand(operand));
+            case opc_invokevirtual: case opc_invokespecial: case opc_invokestatic:
+                return new Insn(opcode, methodOperand(operand));
+            case opc_getstatic: case opc_putstatic: case opc_getfield: case opc_putfield:
+                return new Insn(opcode, fieldOperand(operand));
+            case opc_new: case opc_checkcast: case opc_instanceof: case opc_anewarray:
+                return new Insn(opcode, new ClassCP(operand));
+            case opc_tableswitch:
+                String[] targets = operand.split(" ");
+                LabelOrOffset[] jumps = new LabelOrOffset[targets.length - 3];
+                for (int i = 0; i < jumps.length; i++)
+                    jumps[i] = new LabelOrOffset(getLabel(targets[i + 2]));
+                return new TableswitchInsn(Integer.parseInt(targets[0]), Integer.parseInt(targets[1]),
+                        new LabelOrOffset(getLabel(targets[targets.length - 1])), jumps);
+            case opc_newarray:
+                return new Insn(opcode, operand.equals("boolean") ? T_BOOLEAN : T_INT, false);
+            case opc_iinc:
+                String[] parts = operand.split(" ");
+                return new IincInsn(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), false);
+            default:
+                return new Insn(opcode, Integer.parseInt(operand), false);
+        }
+    }
+
+    @Override
+    public void beginClass(String className, String superClassName) {
+        this.className = className;
+        classEnv = new ClassEnv();
+        classEnv.setVersion(classFileMajorVersion, (short) 0);
+        classEnv.setClass(new ClassCP(className));
+        classEnv.setSuperClass(new ClassCP(superClassName));
+        classEnv.setClassAccess((short) ACC_PUBLIC);
+    }
+
+    private short accessFlags(String accessFlags) {
+        short access = 0;
+        for (String flag : accessFlags.split(" ")) {
+            if (flag.equals("public"))
+                access |= ACC_PUBLIC;
+            else if (flag.equals("static"))
+                access |= ACC_STATIC;
+            else if (flag.equals("final"))
+                access |= ACC_FINAL;
+        }
+        return access;
+    }
+
+    @Override
+    public void addInterface(String interfaceName) {
+        classEnv.addInterface(new ClassCP(interfaceName));
+    }
+
+    @Override
+    public void addField(String accessFlags, String name, String descriptor) {
+        classEnv.addField(new Var(accessFlags(accessFlags), new AsciiCP(name), new AsciiCP(descriptor), null));
+    }
+
+    @Override
+    protected void addMethod(String accessFlags, String name, String descriptor, int stack, int locals, CodeBuffer code) {
+        short access = accessFlags(accessFlags);
+        CodeAttr codeAttr = new CodeAttr();
+        codeAttr.setStackSize((short) stack);
+        codeAttr.setVarSize((short) locals);
+        labels = new HashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            try {
+                codeAttr.addInsn(toInsn(code.get(i)));
+            } catch (jasError e) {
+                throw new BackendException(name + descriptor + ": " + e.getMessage(), e);
+            }
+        }
+        Method method = new Method(access, new AsciiCP(name), new AsciiCP(descriptor));
+        method.setCode(codeAttr, null);
+        classEnv.addMethod(method);
+    }
+
+    @Override
+    public void endClass() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            classEnv.write(new DataOutputStream(bytes));
+            classBytes = bytes.toByteArray();
+        } catch (IOException | jasError e) {
+            throw new BackendException(className + ": " + e.getMessage(), e);
+        }
+    }
+}
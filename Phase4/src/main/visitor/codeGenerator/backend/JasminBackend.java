@@ -0,0 +1,65 @@
+package main.visitor.codeGenerator.backend;
+
+import main.visitor.codeGenerator.CodeBuffer;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+public class JasminBackend extends StackMachineBackend {
+    private final String path;
+    private Writer jasminFile;
+    //jasmin wants every field before the first method, so methods are held back until the class ends
+    private StringBuilder methods;
+
+    public JasminBackend(String path) {
+        this.path = path;
+    }
+
+    private void write(String text) {
+        try {
+            jasminFile.write(text);
+        } catch (IOException e) {//unreachable
+        }
+    }
+
+    @Override
+    public void beginClass(String className, String superClassName) {
+        try {
+            jasminFile = new BufferedWriter(new FileWriter(path));
+        } catch (IOException e) {//unreachable
+        }
+        write(".class public " + className + "\n");
+        write(".super " + superClassName + "\n");
+        methods = new StringBuilder();
+    }
+
+    @Override
+    public void addInterface(String interfaceName) {
+        write(".implements " + interfaceName + "\n");
+    }
+
+    @Override
+    public void addField(String accessFlags, String name, String descriptor) {
+        write(".field " + accessFlags + " " + name + " " + descriptor + "\n");
+    }
+
+    @Override
+    protected void addMethod(String accessFlags, String name, String descriptor, int stack, int locals, CodeBuffer code) {
+        methods.append(".method ").append(accessFlags).append(' ').append(name).append(descriptor).append('\n');
+        methods.append("\t\t.limit stack ").append(stack).append('\n');
+        methods.append("\t\t.limit locals ").append(locals).append('\n');
+        code.writeTo(methods);
+        methods.append(".end method\n");
+    }
+
+    @Override
+    public void endClass() {
+        write(methods.toString());
+        try {
+            jasminFile.close();
+        } catch (IOException e) {//unreachable
+        }
+    }
+}
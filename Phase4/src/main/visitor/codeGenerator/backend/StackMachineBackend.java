@@ -0,0 +1,32 @@
+package main.visitor.codeGenerator.backend;
+
+import main.ir.IrFunction;
+import main.visitor.codeGenerator.CodeBuffer;
+import main.visitor.codeGenerator.InstructionSelector;
+import main.visitor.codeGenerator.MethodFrame;
+import main.visitor.codeGenerator.MethodPass;
+
+import java.util.ArrayList;
+
+//selects JVM instructions for each function, rewrites them with the method passes and sizes the frame,
+//subclasses only write the finished method out
+public abstract class StackMachineBackend implements Backend {
+    private final ArrayList<MethodPass> methodPasses = new ArrayList<>();
+
+    public void addMethodPass(MethodPass methodPass) {
+        methodPasses.add(methodPass);
+    }
+
+    @Override
+    public void addMethod(IrFunction function) {
+        InstructionSelector selector = new InstructionSelector(function);
+        CodeBuffer code = selector.select();
+        for (MethodPass methodPass : methodPasses)
+            code = methodPass.run(code);
+        //frames are sized to what the code uses, after temps that are never live together are given one slot
+        MethodFrame frame = new MethodFrame(code, selector.sharedSlots(), function.getDescriptor(), function.isStatic());
+        addMethod(function.getAccessFlags(), function.getName(), function.getDescriptor(), frame.getMaxStack(), frame.getMaxLocals(), code);
+    }
+
+    protected abstract void addMethod(String accessFlags, String name, String descriptor, int stack, int locals, CodeBuffer code);
+}
@@ -0,0 +1,170 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.statement.*;
+import main.visitor.Visitor;
+import main.visitor.codeGenerator.CalleeResolver;
+
+import java.util.*;
+
+//parameters every call passes the same literal to, for functions that are never used as a value
+//a recursive call passing the parameter on unchanged agrees with any literal
+public class ConstantArguments extends Visitor<Void> {
+    private final Set<String> functions;
+    private final Set<String> escaped = new HashSet<>();
+    //function -> parameter -> the literal passed, null once two calls disagree
+    private final Map<String, Map<String, Expression>> passed = new HashMap<>();
+    private String curFunction;
+
+    public ConstantArguments(Set<String> functions) {
+        this.functions = functions;
+    }
+
+    public Map<String, Map<String, Expression>> collect(Program program) {
+        for (String name : functions) {
+            curFunction = name;
+            CalleeResolver.findFunction(name).getFuncDeclaration().getBody().accept(this);
+        }
+        curFunction = null;
+        program.getMain().getBody().accept(this);
+
+        Map<String, Map<String, Expression>> constants = new HashMap<>();
+        for (Map.Entry<String, Map<String, Expression>> function : passed.entrySet()) {
+            if (escaped.contains(function.getKey()) || !functions.contains(function.getKey()))
+                continue;
+            Map<String, Expression> params = new HashMap<>();
+            for (Map.Entry<String, Expression> param : function.getValue().entrySet())
+                if (param.getValue() != null)
+                    params.put(param.getKey(), param.getValue());
+            if (!params.isEmpty())
+                constants.put(function.getKey(), params);
+        }
+        return constants;
+    }
+
+    private boolean sameLiteral(Expression first, Expression second) {
+        if (first instanceof IntValue && second instanceof IntValue)
+            return ((IntValue) first).getConstant() == ((IntValue) second).getConstant();
+        if (first instanceof BoolValue && second instanceof BoolValue)
+            return ((BoolValue) first).getConstant() == ((BoolValue) second).getConstant();
+        return false;
+    }
+
+    private void record(String callee, FunctionCall funcCall) {
+        ArrayList<Identifier> params = CalleeResolver.findFunction(callee).getFuncDeclaration().getArgs();
+        ArrayList<Expression> args = Rewriter.orderedArgs(funcCall, params);
+        Map<String, Expression> calleePassed = passed.computeIfAbsent(callee, k -> new HashMap<>());
+        for (int i = 0; i < params.size(); i++) {
+            String param = params.get(i).getName();
+            Expression arg = args == null ? null : args.get(i);
+            if (callee.equals(curFunction) && arg instanceof Identifier && ((Identifier) arg).getName().equals(param))
+                continue;
+            boolean literal = arg instanceof IntValue || arg instanceof BoolValue;
+            if (!calleePassed.containsKey(param))
+                calleePassed.put(param, literal ? arg : null);
+            else if (!literal || !sameLiteral(calleePassed.get(param), arg))
+                calleePassed.put(param, null);
+        }
+    }
+
+    @Override
+    public Void visit(BlockStmt blockStmt) {
+        for (Statement stmt : blockStmt.getStatements())
+            stmt.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.getCondition().accept(this);
+        conditionalStmt.getThenBody().accept(this);
+        if (conditionalStmt.getElseBody() != null)
+            conditionalStmt.getElseBody().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(FunctionCallStmt funcCallStmt) {
+        funcCallStmt.getFunctionCall().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(PrintStmt print) {
+        print.getArg().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ReturnStmt returnStmt) {
+        returnStmt.getReturnedExpr().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(BinaryExpression binaryExpression) {
+        binaryExpression.getFirstOperand().accept(this);
+        binaryExpression.getSecondOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(UnaryExpression unaryExpression) {
+        unaryExpression.getOperand().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListAccessByIndex listAccessByIndex) {
+        listAccessByIndex.getInstance().accept(this);
+        listAccessByIndex.getIndex().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListSize listSize) {
+        listSize.getInstance().accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(ListValue listValue) {
+        for (Expression element : listValue.getElements())
+            element.accept(this);
+        return null;
+    }
+
+    //only a callee named right at the call is known to see every call, any other mention lets it escape
+    @Override
+    public Void visit(FunctionCall funcCall) {
+        Expression instance = funcCall.getInstance();
+        if (instance instanceof AnonymousFunction)
+            record(((AnonymousFunction) instance).getName(), funcCall);
+        else if (instance instanceof Identifier && CalleeResolver.findFunction(((Identifier) instance).getName()) != null)
+            record(((Identifier) instance).getName(), funcCall);
+        else
+            instance.accept(this);
+        for (Expression arg : funcCall.getArgs())
+            arg.accept(this);
+        for (Expression arg : funcCall.getArgsWithKey().values())
+            arg.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visit(Identifier identifier) {
+        if (CalleeResolver.findFunction(identifier.getName()) != null)
+            escaped.add(identifier.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(AnonymousFunction anonymousFunction) {
+        escaped.add(anonymousFunction.getName());
+        return null;
+    }
+}
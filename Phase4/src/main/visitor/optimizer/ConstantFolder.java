@@ -0,0 +1,144 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.operators.BinaryOperator;
+import main.ast.nodes.expression.operators.UnaryOperator;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.statement.*;
+import main.visitor.codeGenerator.CalleeResolver;
+
+import java.util.*;
+
+//folds operators over int and bool literals, keeps the taken branch of a constant condition,
+//and substitutes parameters that every call passes the same literal to
+//arithmetic wraps like the jvm's, a division by a literal zero is left to fail at run time
+public class ConstantFolder extends Rewriter {
+    private static final int MAX_ROUNDS = 4;
+
+    private final Set<String> functions;
+    private final Map<String, Map<String, Expression>> propagated = new HashMap<>();
+
+    public ConstantFolder(Set<String> functions) {
+        this.functions = functions;
+    }
+
+    //every round of propagation can fold a call's arguments into new literals for the next one
+    public void run(Program program) {
+        ArrayList<String> names = new ArrayList<>(functions);
+        rewrite(program, names);
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean changed = false;
+            Map<String, Map<String, Expression>> constants = new ConstantArguments(functions).collect(program);
+            for (Map.Entry<String, Map<String, Expression>> function : constants.entrySet()) {
+                Map<String, Expression> params = propagated.computeIfAbsent(function.getKey(), k -> new HashMap<>());
+                for (Map.Entry<String, Expression> param : function.getValue().entrySet())
+                    changed |= params.putIfAbsent(param.getKey(), param.getValue()) == null;
+            }
+            if (!changed)
+                break;
+            rewrite(program, names);
+        }
+    }
+
+    private static boolean isLiteral(Expression expression) {
+        return expression instanceof IntValue || expression instanceof BoolValue;
+    }
+
+    private static int intOf(Expression expression) {
+        return ((IntValue) expression).getConstant();
+    }
+
+    private static boolean boolOf(Expression expression) {
+        return ((BoolValue) expression).getConstant();
+    }
+
+    private <T extends Node> T at(T folded, Node original) {
+        folded.setLine(original.getLine());
+        return folded;
+    }
+
+    private Expression fold(BinaryExpression binaryExpression) {
+        Expression left = binaryExpression.getFirstOperand();
+        Expression right = binaryExpression.getSecondOperand();
+        BinaryOperator operator = binaryExpression.getBinaryOperator();
+        //the left operand of and/or is evaluated first, so only it decides whether the right one runs
+        if (operator == BinaryOperator.and || operator == BinaryOperator.or) {
+            boolean shortCircuit = operator == BinaryOperator.or;
+            if (left instanceof BoolValue)
+                return boolOf(left) == shortCircuit ? left : right;
+            if (right instanceof BoolValue && boolOf(right) != shortCircuit)
+                return left;
+            return binaryExpression;
+        }
+        if (!isLiteral(left) || !isLiteral(right))
+            return binaryExpression;
+        switch (operator) {
+            case eq:
+            case neq:
+                if (left.getClass() != right.getClass())
+                    return binaryExpression;
+                boolean equal = left instanceof IntValue ? intOf(left) == intOf(right) : boolOf(left) == boolOf(right);
+                return new BoolValue(equal == (operator == BinaryOperator.eq));
+            case gt:
+                return new BoolValue(intOf(left) > intOf(right));
+            case lt:
+                return new BoolValue(intOf(left) < intOf(right));
+            case add:
+                return new IntValue(intOf(left) + intOf(right));
+            case sub:
+                return new IntValue(intOf(left) - intOf(right));
+            case mult:
+                return new IntValue(intOf(left) * intOf(right));
+            case div:
+                if (intOf(right) == 0)
+                    return binaryExpression;
+                return new IntValue(intOf(left) / intOf(right));
+            default:
+                return binaryExpression;
+        }
+    }
+
+    @Override
+    public Node visit(BinaryExpression binaryExpression) {
+        super.visit(binaryExpression);
+        Expression folded = fold(binaryExpression);
+        return folded == binaryExpression ? folded : at(folded, binaryExpression);
+    }
+
+    @Override
+    public Node visit(UnaryExpression unaryExpression) {
+        super.visit(unaryExpression);
+        Expression operand = unaryExpression.getOperand();
+        if (unaryExpression.getOperator() == UnaryOperator.not && operand instanceof BoolValue)
+            return at(new BoolValue(!boolOf(operand)), unaryExpression);
+        if (unaryExpression.getOperator() == UnaryOperator.minus && operand instanceof IntValue)
+            return at(new IntValue(-intOf(operand)), unaryExpression);
+        return unaryExpression;
+    }
+
+    @Override
+    public Node visit(ConditionalStmt conditionalStmt) {
+        Expression condition = expression(conditionalStmt.getCondition());
+        if (!(condition instanceof BoolValue)) {
+            conditionalStmt.setCondition(condition);
+            return super.visit(conditionalStmt);
+        }
+        Statement taken = boolOf(condition) ? conditionalStmt.getThenBody() : conditionalStmt.getElseBody();
+        return taken == null ? null : statement(taken);
+    }
+
+    @Override
+    public Node visit(Identifier identifier) {
+        if (curFunction == null || !propagated.containsKey(curFunction.getName()))
+            return identifier;
+        if (CalleeResolver.findFunction(identifier.getName()) != null)
+            return identifier;
+        Expression constant = propagated.get(curFunction.getName()).get(identifier.getName());
+        if (constant == null)
+            return identifier;
+        return at(new Copier().copy(constant), identifier);
+    }
+}
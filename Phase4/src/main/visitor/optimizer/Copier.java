@@ -0,0 +1,144 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.VoidValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.visitor.Visitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//deep copy of a statement or expression, identifiers named in substitutions are replaced by a copy of their expression
+//anonymous functions are shared, they are referenced by name
+public class Copier extends Visitor<Node> {
+    private final Map<String, Expression> substitutions;
+
+    public Copier() {
+        this(new HashMap<>());
+    }
+
+    public Copier(Map<String, Expression> substitutions) {
+        this.substitutions = substitutions;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Node> T copy(T node) {
+        return (T) node.accept(this);
+    }
+
+    private <T extends Node> T at(T copy, Node original) {
+        copy.setLine(original.getLine());
+        return copy;
+    }
+
+    @Override
+    public Node visit(BlockStmt blockStmt) {
+        ArrayList<Statement> statements = new ArrayList<>();
+        for (Statement stmt : blockStmt.getStatements())
+            statements.add(copy(stmt));
+        return at(new BlockStmt(statements), blockStmt);
+    }
+
+    @Override
+    public Node visit(ConditionalStmt conditionalStmt) {
+        ConditionalStmt copy = new ConditionalStmt(copy(conditionalStmt.getCondition()), copy(conditionalStmt.getThenBody()));
+        if (conditionalStmt.getElseBody() != null)
+            copy.setElseBody(copy(conditionalStmt.getElseBody()));
+        return at(copy, conditionalStmt);
+    }
+
+    @Override
+    public Node visit(FunctionCallStmt funcCallStmt) {
+        return at(new FunctionCallStmt(copy(funcCallStmt.getFunctionCall())), funcCallStmt);
+    }
+
+    @Override
+    public Node visit(PrintStmt print) {
+        return at(new PrintStmt(copy(print.getArg())), print);
+    }
+
+    @Override
+    public Node visit(ReturnStmt returnStmt) {
+        return at(new ReturnStmt(copy(returnStmt.getReturnedExpr())), returnStmt);
+    }
+
+    @Override
+    public Node visit(BinaryExpression binaryExpression) {
+        return at(new BinaryExpression(copy(binaryExpression.getFirstOperand()), copy(binaryExpression.getSecondOperand()),
+                binaryExpression.getBinaryOperator()), binaryExpression);
+    }
+
+    @Override
+    public Node visit(UnaryExpression unaryExpression) {
+        return at(new UnaryExpression(copy(unaryExpression.getOperand()), unaryExpression.getOperator()), unaryExpression);
+    }
+
+    @Override
+    public Node visit(ListAccessByIndex listAccessByIndex) {
+        return at(new ListAccessByIndex(copy(listAccessByIndex.getInstance()), copy(listAccessByIndex.getIndex())), listAccessByIndex);
+    }
+
+    @Override
+    public Node visit(ListSize listSize) {
+        return at(new ListSize(copy(listSize.getInstance())), listSize);
+    }
+
+    @Override
+    public Node visit(ListValue listValue) {
+        ArrayList<Expression> elements = new ArrayList<>();
+        for (Expression element : listValue.getElements())
+            elements.add(copy(element));
+        return at(new ListValue(elements), listValue);
+    }
+
+    @Override
+    public Node visit(FunctionCall funcCall) {
+        ArrayList<Expression> args = new ArrayList<>();
+        for (Expression arg : funcCall.getArgs())
+            args.add(copy(arg));
+        Map<Identifier, Expression> argsWithKey = new LinkedHashMap<>();
+        for (Map.Entry<Identifier, Expression> arg : funcCall.getArgsWithKey().entrySet())
+            argsWithKey.put(arg.getKey(), copy(arg.getValue()));
+        return at(new FunctionCall(copy(funcCall.getInstance()), args, argsWithKey), funcCall);
+    }
+
+    @Override
+    public Node visit(Identifier identifier) {
+        Expression substitution = substitutions.get(identifier.getName());
+        if (substitution != null)
+            return new Copier().copy(substitution);
+        return at(new Identifier(identifier.getName()), identifier);
+    }
+
+    @Override
+    public Node visit(AnonymousFunction anonymousFunction) {
+        return anonymousFunction;
+    }
+
+    @Override
+    public Node visit(IntValue intValue) {
+        return at(new IntValue(intValue.getConstant()), intValue);
+    }
+
+    @Override
+    public Node visit(BoolValue boolValue) {
+        return at(new BoolValue(boolValue.getConstant()), boolValue);
+    }
+
+    @Override
+    public Node visit(StringValue stringValue) {
+        return at(new StringValue(stringValue.getConstant()), stringValue);
+    }
+
+    @Override
+    public Node visit(VoidValue voidValue) {
+        return at(new VoidValue(), voidValue);
+    }
+}
@@ -0,0 +1,103 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.expression.Expression;
+import main.ast.nodes.expression.FunctionCall;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.statement.*;
+import main.visitor.codeGenerator.CallGraph;
+import main.visitor.codeGenerator.CalleeResolver;
+import main.visitor.codeGenerator.CostEstimator;
+
+import java.util.*;
+
+//removes statements after a return, branches whose condition folds to a constant and calls whose result is unused
+//if they always return without an effect
+public class DeadCodeEliminator extends Rewriter {
+    private final Set<String> functions;
+    private final CostEstimator costEstimator;
+    private final ConstantFolder folder;
+    private int removedNodes = 0;
+
+    public DeadCodeEliminator(Set<String> functions) {
+        this.functions = functions;
+        CalleeResolver calleeResolver = new CalleeResolver();
+        this.costEstimator = new CostEstimator(calleeResolver, new CallGraph(calleeResolver, functions));
+        this.folder = new ConstantFolder(functions);
+    }
+
+    public void run(Program program) {
+        rewrite(program, functions);
+    }
+
+    public int getRemovedNodes() {
+        return removedNodes;
+    }
+
+    //nodes of the statement that are gone, the taken branch put back in its place is not counted
+    private void remove(Statement stmt, Statement replacement) {
+        removedNodes += new TreeSize().measure(stmt);
+        if (replacement != null)
+            removedNodes -= new TreeSize().measure(replacement);
+    }
+
+    //the grammar lets statements follow a return, or an if whose branches both return
+    private static boolean alwaysReturns(Statement stmt) {
+        if (stmt instanceof ReturnStmt)
+            return true;
+        if (stmt instanceof BlockStmt) {
+            for (Statement inner : ((BlockStmt) stmt).getStatements())
+                if (alwaysReturns(inner))
+                    return true;
+            return false;
+        }
+        if (stmt instanceof ConditionalStmt) {
+            ConditionalStmt conditionalStmt = (ConditionalStmt) stmt;
+            return conditionalStmt.getElseBody() != null && alwaysReturns(conditionalStmt.getThenBody())
+                    && alwaysReturns(conditionalStmt.getElseBody());
+        }
+        return false;
+    }
+
+    @Override
+    public Node visit(BlockStmt blockStmt) {
+        ArrayList<Statement> statements = new ArrayList<>();
+        boolean reachable = true;
+        for (Statement stmt : blockStmt.getStatements()) {
+            if (!reachable) {
+                remove(stmt, null);
+                continue;
+            }
+            Statement result = (Statement) stmt.accept(this);
+            if (result instanceof BlockStmt)
+                statements.addAll(((BlockStmt) result).getStatements());
+            else if (result != null)
+                statements.add(result);
+            reachable = result == null || !alwaysReturns(result);
+        }
+        blockStmt.setStatements(statements);
+        return blockStmt;
+    }
+
+    @Override
+    public Node visit(ConditionalStmt conditionalStmt) {
+        //folded on a copy, a condition that stays is left as it was written
+        Expression condition = folder.expression(new Copier().copy(conditionalStmt.getCondition()));
+        if (!(condition instanceof BoolValue))
+            return super.visit(conditionalStmt);
+        Statement taken = ((BoolValue) condition).getConstant() ? conditionalStmt.getThenBody() : conditionalStmt.getElseBody();
+        remove(conditionalStmt, taken);
+        return taken == null ? null : statement(taken);
+    }
+
+    @Override
+    public Node visit(FunctionCallStmt funcCallStmt) {
+        FunctionCall funcCall = funcCallStmt.getFunctionCall();
+        rewriteChildren(funcCall);
+        if (!costEstimator.isRemovable(funcCall))
+            return funcCallStmt;
+        remove(funcCallStmt, null);
+        return null;
+    }
+}
@@ -0,0 +1,195 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.VoidValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.visitor.codeGenerator.CallGraph;
+import main.visitor.codeGenerator.CalleeResolver;
+import main.visitor.codeGenerator.CostEstimator;
+
+import java.util.*;
+
+//replaces calls to small non recursive functions by a copy of their body with the arguments substituted for the parameters
+//a body qualifies if it is prints and call statements followed by a return, and has at most budget nodes
+public class Inliner extends Rewriter {
+    public static final int DEFAULT_BUDGET = 32;
+
+    private final Set<String> functions;
+    private final int budget;
+    private final CalleeResolver calleeResolver = new CalleeResolver();
+    private final CallGraph callGraph;
+    private final CostEstimator costEstimator;
+    private final Map<String, Template> templates = new HashMap<>();
+    //callees whose copy is being rewritten, a function value passed around can not make the expansion endless
+    private final Set<String> expanding = new HashSet<>();
+
+    private static class Template {
+        private final ArrayList<Statement> prefix = new ArrayList<>();
+        //null when the body ends without returning a value
+        private Expression result;
+        private final TreeSize size = new TreeSize();
+    }
+
+    private static class Expansion {
+        private final ArrayList<Statement> prefix = new ArrayList<>();
+        private Expression result;
+    }
+
+    public Inliner(Set<String> functions, int budget) {
+        this.functions = functions;
+        this.budget = budget;
+        this.callGraph = new CallGraph(calleeResolver, functions);
+        this.costEstimator = new CostEstimator(calleeResolver, callGraph);
+    }
+
+    //callees are rewritten before their callers, so a body is copied with its own calls already inlined
+    public void run(Program program) {
+        ArrayList<String> order = new ArrayList<>();
+        for (ArrayList<String> component : callGraph.getComponents())
+            order.addAll(component);
+        rewrite(program, order);
+    }
+
+    private Template template(String name) {
+        if (templates.containsKey(name))
+            return templates.get(name);
+        Template template = null;
+        if (functions.contains(name) && !callGraph.isRecursive(name))
+            template = buildTemplate(CalleeResolver.findFunction(name).getFuncDeclaration());
+        templates.put(name, template);
+        return template;
+    }
+
+    private Template buildTemplate(FunctionDeclaration funcDeclaration) {
+        Statement body = funcDeclaration.getBody();
+        List<Statement> statements = body instanceof BlockStmt ? ((BlockStmt) body).getStatements() : List.of(body);
+        Template template = new Template();
+        for (Statement stmt : statements) {
+            if (stmt instanceof ReturnStmt) {
+                template.result = ((ReturnStmt) stmt).getReturnedExpr();
+                break;
+            }
+            if (!(stmt instanceof PrintStmt) && !(stmt instanceof FunctionCallStmt))
+                return null;
+            template.prefix.add(stmt);
+        }
+        if (template.size.measure(body) > budget)
+            return null;
+        return template;
+    }
+
+    private boolean isTrivial(Expression expression) {
+        return expression instanceof Identifier || expression instanceof AnonymousFunction || expression instanceof IntValue
+                || expression instanceof BoolValue || expression instanceof StringValue || expression instanceof VoidValue;
+    }
+
+    //an expression that may be left out or evaluated later than it was written
+    private boolean isRemovable(Expression expression) {
+        return costEstimator.isRemovable(expression);
+    }
+
+    //the callee's body for this call, null if the call has to stay
+    private Expansion expand(FunctionCall funcCall) {
+        rewriteChildren(funcCall);
+        String callee = calleeResolver.resolve(funcCall.getInstance());
+        Template template = callee == null || expanding.contains(callee) ? null : template(callee);
+        if (template == null)
+            return null;
+        Expression instance = funcCall.getInstance();
+        if (!(instance instanceof Identifier) && !(instance instanceof AnonymousFunction) && !isRemovable(instance))
+            return null;
+
+        ArrayList<Identifier> params = CalleeResolver.findFunction(callee).getFuncDeclaration().getArgs();
+        ArrayList<Expression> args = orderedArgs(funcCall, params);
+        if (args == null)
+            return null;
+        Map<String, Expression> substitutions = new HashMap<>();
+        for (int i = 0; i < params.size(); i++) {
+            String param = params.get(i).getName();
+            Expression arg = args.get(i);
+            //anything else is evaluated at most once, and no earlier than a print of the body could observe
+            boolean movable = isRemovable(arg) && template.size.uses(param) <= 1 && template.prefix.isEmpty();
+            if (!isTrivial(arg) && !movable)
+                return null;
+            substitutions.put(param, arg);
+        }
+        //a global name used by the body must not be shadowed by a parameter of the function it is copied into
+        if (curFunction != null)
+            for (String name : curFunction.getArgTypes().keySet())
+                if (!substitutions.containsKey(name) && template.size.uses(name) > 0)
+                    return null;
+
+        //substituted function values can make calls of the copy resolvable, so it is rewritten once more
+        Copier copier = new Copier(substitutions);
+        Expansion expansion = new Expansion();
+        expanding.add(callee);
+        for (Statement stmt : template.prefix)
+            expansion.prefix.add(statement(at(copier.copy(stmt), funcCall)));
+        if (template.result != null)
+            expansion.result = expression(at(copier.copy(template.result), funcCall));
+        expanding.remove(callee);
+        return expansion;
+    }
+
+    //inlined code reports errors at the call's line
+    private <T extends Node> T at(T node, Node call) {
+        node.setLine(call.getLine());
+        return node;
+    }
+
+    private BlockStmt inlined(Expansion expansion, Statement last) {
+        ArrayList<Statement> statements = new ArrayList<>(expansion.prefix);
+        if (last != null)
+            statements.add(last);
+        return new BlockStmt(statements);
+    }
+
+    @Override
+    public Node visit(FunctionCallStmt funcCallStmt) {
+        Expansion expansion = expand(funcCallStmt.getFunctionCall());
+        if (expansion == null)
+            return funcCallStmt;
+        Expression result = expansion.result;
+        if (result instanceof FunctionCall)
+            return inlined(expansion, at(new FunctionCallStmt((FunctionCall) result), funcCallStmt));
+        if (result == null || result instanceof VoidValue || isRemovable(result))
+            return inlined(expansion, null);
+        return funcCallStmt;
+    }
+
+    @Override
+    public Node visit(PrintStmt print) {
+        if (!(print.getArg() instanceof FunctionCall))
+            return super.visit(print);
+        Expansion expansion = expand((FunctionCall) print.getArg());
+        if (expansion == null || expansion.result == null)
+            return print;
+        print.setArg(expansion.result);
+        return inlined(expansion, print);
+    }
+
+    @Override
+    public Node visit(ReturnStmt returnStmt) {
+        if (!(returnStmt.getReturnedExpr() instanceof FunctionCall))
+            return super.visit(returnStmt);
+        Expansion expansion = expand((FunctionCall) returnStmt.getReturnedExpr());
+        if (expansion == null || expansion.result == null)
+            return returnStmt;
+        returnStmt.setReturnedExpr(expansion.result);
+        return inlined(expansion, returnStmt);
+    }
+
+    @Override
+    public Node visit(FunctionCall funcCall) {
+        Expansion expansion = expand(funcCall);
+        if (expansion == null || expansion.result == null || !expansion.prefix.isEmpty())
+            return funcCall;
+        return expansion.result;
+    }
+}
@@ -0,0 +1,186 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.Program;
+import main.ast.nodes.declaration.FunctionDeclaration;
+import main.ast.nodes.declaration.MainDeclaration;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.VoidValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.symbolTable.items.FunctionSymbolTableItem;
+import main.visitor.Visitor;
+import main.visitor.codeGenerator.CalleeResolver;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+//rewrites the tree in place, every visit returns the node that takes the visited node's place
+//a statement may be replaced by a block, which the enclosing block splices in, or by null to remove it
+public class Rewriter extends Visitor<Node> {
+    protected FunctionSymbolTableItem curFunction;
+
+    public void rewrite(Program program, Iterable<String> functions) {
+        for (String name : functions) {
+            curFunction = CalleeResolver.findFunction(name);
+            FunctionDeclaration funcDeclaration = curFunction.getFuncDeclaration();
+            funcDeclaration.setBody(statement(funcDeclaration.getBody()));
+        }
+        curFunction = null;
+        MainDeclaration main = program.getMain();
+        main.setBody(statement(main.getBody()));
+    }
+
+    protected Expression expression(Expression expression) {
+        return (Expression) expression.accept(this);
+    }
+
+    protected Statement statement(Statement statement) {
+        Statement result = (Statement) statement.accept(this);
+        return result != null ? result : new BlockStmt();
+    }
+
+    //the arguments in parameter order, null if they do not cover the parameters
+    protected static ArrayList<Expression> orderedArgs(FunctionCall funcCall, ArrayList<Identifier> params) {
+        ArrayList<Expression> args = funcCall.getArgs();
+        Map<Identifier, Expression> argsWithKey = funcCall.getArgsWithKey();
+        if (!args.isEmpty())
+            return args.size() == params.size() ? args : null;
+        if (argsWithKey.size() != params.size())
+            return null;
+        ArrayList<Expression> ordered = new ArrayList<>();
+        for (Identifier param : params) {
+            Expression arg = null;
+            for (Map.Entry<Identifier, Expression> entry : argsWithKey.entrySet())
+                if (entry.getKey().getName().equals(param.getName()))
+                    arg = entry.getValue();
+            if (arg == null)
+                return null;
+            ordered.add(arg);
+        }
+        return ordered;
+    }
+
+    protected void rewriteChildren(FunctionCall funcCall) {
+        funcCall.setInstance(expression(funcCall.getInstance()));
+        ArrayList<Expression> args = funcCall.getArgs();
+        for (int i = 0; i < args.size(); i++)
+            args.set(i, expression(args.get(i)));
+        for (Map.Entry<Identifier, Expression> arg : funcCall.getArgsWithKey().entrySet())
+            arg.setValue(expression(arg.getValue()));
+    }
+
+    @Override
+    public Node visit(BlockStmt blockStmt) {
+        ArrayList<Statement> statements = new ArrayList<>();
+        for (Statement stmt : blockStmt.getStatements()) {
+            Statement result = (Statement) stmt.accept(this);
+            if (result instanceof BlockStmt)
+                statements.addAll(((BlockStmt) result).getStatements());
+            else if (result != null)
+                statements.add(result);
+        }
+        blockStmt.setStatements(statements);
+        return blockStmt;
+    }
+
+    @Override
+    public Node visit(ConditionalStmt conditionalStmt) {
+        conditionalStmt.setCondition(expression(conditionalStmt.getCondition()));
+        conditionalStmt.setThenBody(statement(conditionalStmt.getThenBody()));
+        if (conditionalStmt.getElseBody() != null)
+            conditionalStmt.setElseBody(statement(conditionalStmt.getElseBody()));
+        return conditionalStmt;
+    }
+
+    @Override
+    public Node visit(FunctionCallStmt funcCallStmt) {
+        rewriteChildren(funcCallStmt.getFunctionCall());
+        return funcCallStmt;
+    }
+
+    @Override
+    public Node visit(PrintStmt print) {
+        print.setArg(expression(print.getArg()));
+        return print;
+    }
+
+    @Override
+    public Node visit(ReturnStmt returnStmt) {
+        returnStmt.setReturnedExpr(expression(returnStmt.getReturnedExpr()));
+        return returnStmt;
+    }
+
+    @Override
+    public Node visit(BinaryExpression binaryExpression) {
+        binaryExpression.setFirstOperand(expression(binaryExpression.getFirstOperand()));
+        binaryExpression.setSecondOperand(expression(binaryExpression.getSecondOperand()));
+        return binaryExpression;
+    }
+
+    @Override
+    public Node visit(UnaryExpression unaryExpression) {
+        unaryExpression.setOperand(expression(unaryExpression.getOperand()));
+        return unaryExpression;
+    }
+
+    @Override
+    public Node visit(ListAccessByIndex listAccessByIndex) {
+        listAccessByIndex.setInstance(expression(listAccessByIndex.getInstance()));
+        listAccessByIndex.setIndex(expression(listAccessByIndex.getIndex()));
+        return listAccessByIndex;
+    }
+
+    @Override
+    public Node visit(ListSize listSize) {
+        listSize.setInstance(expression(listSize.getInstance()));
+        return listSize;
+    }
+
+    @Override
+    public Node visit(ListValue listValue) {
+        ArrayList<Expression> elements = listValue.getElements();
+        for (int i = 0; i < elements.size(); i++)
+            elements.set(i, expression(elements.get(i)));
+        return listValue;
+    }
+
+    @Override
+    public Node visit(FunctionCall funcCall) {
+        rewriteChildren(funcCall);
+        return funcCall;
+    }
+
+    @Override
+    public Node visit(Identifier identifier) {
+        return identifier;
+    }
+
+    @Override
+    public Node visit(AnonymousFunction anonymousFunction) {
+        return anonymousFunction;
+    }
+
+    @Override
+    public Node visit(IntValue intValue) {
+        return intValue;
+    }
+
+    @Override
+    public Node visit(BoolValue boolValue) {
+        return boolValue;
+    }
+
+    @Override
+    public Node visit(StringValue stringValue) {
+        return stringValue;
+    }
+
+    @Override
+    public Node visit(VoidValue voidValue) {
+        return voidValue;
+    }
+}
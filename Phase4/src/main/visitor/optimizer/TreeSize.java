@@ -0,0 +1,127 @@
+package main.visitor.optimizer;
+
+import main.ast.nodes.Node;
+import main.ast.nodes.expression.*;
+import main.ast.nodes.expression.values.ListValue;
+import main.ast.nodes.expression.values.VoidValue;
+import main.ast.nodes.expression.values.primitive.BoolValue;
+import main.ast.nodes.expression.values.primitive.IntValue;
+import main.ast.nodes.expression.values.primitive.StringValue;
+import main.ast.nodes.statement.*;
+import main.visitor.Visitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//number of nodes in statements and expressions, and how often each identifier is used in them
+public class TreeSize extends Visitor<Integer> {
+    private final Map<String, Integer> uses = new HashMap<>();
+
+    public int measure(Node node) {
+        return node.accept(this);
+    }
+
+    public int uses(String name) {
+        return uses.getOrDefault(name, 0);
+    }
+
+    @Override
+    public Integer visit(BlockStmt blockStmt) {
+        int size = 1;
+        for (Statement stmt : blockStmt.getStatements())
+            size += stmt.accept(this);
+        return size;
+    }
+
+    @Override
+    public Integer visit(ConditionalStmt conditionalStmt) {
+        int size = 1 + conditionalStmt.getCondition().accept(this) + conditionalStmt.getThenBody().accept(this);
+        if (conditionalStmt.getElseBody() != null)
+            size += conditionalStmt.getElseBody().accept(this);
+        return size;
+    }
+
+    @Override
+    public Integer visit(FunctionCallStmt funcCallStmt) {
+        return 1 + funcCallStmt.getFunctionCall().accept(this);
+    }
+
+    @Override
+    public Integer visit(PrintStmt print) {
+        return 1 + print.getArg().accept(this);
+    }
+
+    @Override
+    public Integer visit(ReturnStmt returnStmt) {
+        return 1 + returnStmt.getReturnedExpr().accept(this);
+    }
+
+    @Override
+    public Integer visit(BinaryExpression binaryExpression) {
+        return 1 + binaryExpression.getFirstOperand().accept(this) + binaryExpression.getSecondOperand().accept(this);
+    }
+
+    @Override
+    public Integer visit(UnaryExpression unaryExpression) {
+        return 1 + unaryExpression.getOperand().accept(this);
+    }
+
+    @Override
+    public Integer visit(ListAccessByIndex listAccessByIndex) {
+        return 1 + listAccessByIndex.getInstance().accept(this) + listAccessByIndex.getIndex().accept(this);
+    }
+
+    @Override
+    public Integer visit(ListSize listSize) {
+        return 1 + listSize.getInstance().accept(this);
+    }
+
+    @Override
+    public Integer visit(ListValue listValue) {
+        int size = 1;
+        for (Expression element : listValue.getElements())
+            size += element.accept(this);
+        return size;
+    }
+
+    @Override
+    public Integer visit(FunctionCall funcCall) {
+        int size = 1 + funcCall.getInstance().accept(this);
+        for (Expression arg : funcCall.getArgs())
+            size += arg.accept(this);
+        for (Expression arg : funcCall.getArgsWithKey().values())
+            size += arg.accept(this);
+        return size;
+    }
+
+    @Override
+    public Integer visit(Identifier identifier) {
+        uses.merge(identifier.getName(), 1, Integer::sum);
+        return 1;
+    }
+
+    @Override
+    public Integer visit(AnonymousFunction anonymousFunction) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(IntValue intValue) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(BoolValue boolValue) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(StringValue stringValue) {
+        return 1;
+    }
+
+    @Override
+    public Integer visit(VoidValue voidValue) {
+        return 1;
+    }
+}
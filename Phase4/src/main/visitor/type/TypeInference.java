@@ -18,18 +18,31 @@ import main.ast.types.single.BoolType;
 import main.ast.types.single.IntType;
 import main.ast.types.single.StringType;
 import main.symbolTable.SymbolTable;
+import main.symbolTable.exceptions.ItemAlreadyExistsException;
 import main.symbolTable.exceptions.ItemNotFoundException;
 import main.symbolTable.items.FunctionSymbolTableItem;
 import main.symbolTable.items.VariableSymbolTableItem;
 import main.visitor.Visitor;
+import main.visitor.optimizer.Copier;
 
 import java.util.*;
 
 public class TypeInference extends Visitor<Type> {
+    private static final int MAX_SPECIALIZATIONS = 8;
+
     private SymbolTable functionSymbolTable;
     private Set<String> visited;
     private TypeSetter typeSetter;
     private boolean isFunctioncallStmt;
+    private boolean monomorphize = false;
+    //function -> the copies of it typed for other argument types, the function itself first
+    private final Map<String, ArrayList<String>> specializations = new HashMap<>();
+    //copy -> the function it was copied from
+    private final Map<String, String> origins = new HashMap<>();
+
+    public void setMonomorphize(boolean monomorphize) {
+        this.monomorphize = monomorphize;
+    }
 
     public void setFunctioncallStmt(boolean functioncallStmt) {
         isFunctioncallStmt = functioncallStmt;
@@ -137,6 +150,116 @@ public class TypeInference extends Visitor<Type> {
         return false;
     }
 
+    private static String typeName(Type type) {
+        if (type instanceof IntType)
+            return "int";
+        if (type instanceof BoolType)
+            return "bool";
+        if (type instanceof StringType)
+            return "string";
+        if (type instanceof VoidType)
+            return "void";
+        if (type instanceof ListType)
+            return "list_" + typeName(((ListType) type).getType());
+        if (type instanceof FptrType)
+            return "fptr";
+        return "notype";
+    }
+
+    //a value of type actual can be passed where expected is, without losing anything expected knows
+    private boolean covers(Type expected, Type actual) {
+        if (actual instanceof NoType)
+            return true;
+        if (expected instanceof ListType && actual instanceof ListType)
+            return covers(((ListType) expected).getType(), ((ListType) actual).getType());
+        if (expected instanceof FptrType && actual instanceof FptrType)
+            return sameType(expected, actual);
+        return !(expected instanceof NoType) && !(expected instanceof ListType) && expected.getClass() == actual.getClass();
+    }
+
+    private boolean covers(FunctionSymbolTableItem fitem, ArrayList<Type> types) {
+        int i = 0;
+        for (Identifier arg : fitem.getFuncDeclaration().getArgs()) {
+            Type expected = fitem.getArgTypes().get(arg.getName());
+            if (expected == null || !covers(expected, types.get(i)))
+                return false;
+            i++;
+        }
+        return true;
+    }
+
+    //a call naming a function directly gets the copy of it typed for its argument types, made on first use
+    //calls through function values keep calling the function itself
+    private void specialize(FunctionCall funcCall, ArrayList<Type> rtypes, Map<String, Type> rtypesWithKey) {
+        String name = ((Identifier) funcCall.getInstance()).getName();
+        String origin = origins.getOrDefault(name, name);
+        FunctionSymbolTableItem original = findFunccSymobolTableItem(new FptrType(origin));
+        if (original == null || !visited.contains(origin))
+            return;
+        ArrayList<Identifier> args = original.getFuncDeclaration().getArgs();
+        ArrayList<Type> types = new ArrayList<>();
+        if (rtypesWithKey.size() != 0) {
+            for (Identifier arg : args)
+                if (rtypesWithKey.containsKey(arg.getName()))
+                    types.add(rtypesWithKey.get(arg.getName()));
+        }
+        else
+            types.addAll(rtypes);
+        if (types.size() != args.size() || rtypesWithKey.size() != 0 && rtypesWithKey.size() != args.size())
+            return;
+
+        ArrayList<String> instances = specializations.computeIfAbsent(origin, k -> new ArrayList<>(List.of(origin)));
+        for (String instance : instances) {
+            if (covers(findFunccSymobolTableItem(new FptrType(instance)), types)) {
+                retarget(funcCall, instance);
+                return;
+            }
+        }
+        if (instances.size() >= MAX_SPECIALIZATIONS)
+            return;
+        StringBuilder specializedName = new StringBuilder(origin).append("$");
+        for (int i = 0; i < types.size(); i++)
+            specializedName.append(i == 0 ? "" : "_").append(typeName(types.get(i)));
+        while (findFunccSymobolTableItem(new FptrType(specializedName.toString())) != null)
+            specializedName.append("$");
+        String specialized = specializedName.toString();
+
+        FunctionDeclaration fdec = new FunctionDeclaration();
+        fdec.setLine(original.getFuncDeclaration().getLine());
+        fdec.setFunctionName(new Identifier(specialized));
+        SymbolTable specializedSymbolTable = new SymbolTable();
+        for (Identifier arg : args) {
+            Identifier specializedArg = new Identifier(arg.getName());
+            specializedArg.setLine(arg.getLine());
+            fdec.addArg(specializedArg);
+            try {
+                specializedSymbolTable.put(new VariableSymbolTableItem(specializedArg));
+            } catch (ItemAlreadyExistsException e) { //unreachable
+            }
+        }
+        fdec.setBody(new Copier().copy(original.getFuncDeclaration().getBody()));
+        FunctionSymbolTableItem fitem = new FunctionSymbolTableItem(fdec);
+        fitem.setFunctionSymbolTable(specializedSymbolTable);
+        try {
+            SymbolTable.root.put(fitem);
+        } catch (ItemAlreadyExistsException e) { //unreachable
+        }
+        setArgumentsType(fitem, types);
+        typeSetter.addFunction(fdec);
+        instances.add(specialized);
+        origins.put(specialized, origin);
+        retarget(funcCall, specialized);
+    }
+
+    private void retarget(FunctionCall funcCall, String name) {
+        Identifier instance = (Identifier) funcCall.getInstance();
+        if (instance.getName().equals(name))
+            return;
+        Identifier specializedInstance = new Identifier(name);
+        specializedInstance.setLine(instance.getLine());
+        funcCall.setInstance(specializedInstance);
+    }
+
     private FunctionSymbolTableItem findFunccSymobolTableItem(FptrType fptr) {
         try{
             FunctionSymbolTableItem func = (FunctionSymbolTableItem) SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + fptr.getFunctionName());
@@ -307,6 +430,11 @@ public class TypeInference extends Visitor<Type> {
             rtypes.add(t);
         }
         isFunctioncallStmt = temp;
+        if (monomorphize && instanceType instanceof FptrType && funcCall.getInstance() instanceof Identifier
+                && ((Identifier) funcCall.getInstance()).getName().equals(((FptrType) instanceType).getFunctionName())) {
+            specialize(funcCall, rtypes, rtypesWithKey);
+            instanceType = funcCall.getInstance().accept(this);
+        }
         if (instanceType instanceof FptrType && !visited.contains(((FptrType) instanceType).getFunctionName())) {
             FunctionSymbolTableItem fItem = findFunccSymobolTableItem((FptrType) instanceType);
 
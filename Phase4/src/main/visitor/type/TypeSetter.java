@@ -20,6 +20,7 @@ public class TypeSetter  extends Visitor<Void> {
     private TypeInference typeInference;
     private Set<String> visited;
     private FunctionSymbolTableItem curFuncSymbolTableItem;
+    private Program program;
     public TypeSetter() {
         typeInference = new TypeInference(this);
         visited = new HashSet<>();
@@ -29,6 +30,15 @@ public class TypeSetter  extends Visitor<Void> {
         return visited;
     }
 
+    public void setMonomorphize(boolean monomorphize) {
+        typeInference.setMonomorphize(monomorphize);
+    }
+
+    //specializations made while typing are declared like the functions they were copied from
+    void addFunction(FunctionDeclaration funcDeclaration) {
+        program.addFunction(funcDeclaration);
+    }
+
     private SymbolTable findFuncSymbolTable(Identifier name) {
         try {
             FunctionSymbolTableItem fitem = (FunctionSymbolTableItem) SymbolTable.root.getItem(FunctionSymbolTableItem.START_KEY + name.getName());
@@ -42,6 +52,7 @@ public class TypeSetter  extends Visitor<Void> {
 
     @Override
     public Void visit(Program program) {
+        this.program = program;
         program.getMain().accept(this);
         visited.clear();
         program.getMain().accept(this);